@@ -1,14 +1,26 @@
 package study.datajpa;
 
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.domain.AuditorAware;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import study.datajpa.repository.QueryResultCache;
 
 import java.util.Optional;
 import java.util.UUID;
 
+@EnableCaching //조회 결과 캐시 (QueryResultCacheInvalidator 참고)
+@EnableConfigurationProperties(CacheProperties.class) //cacheManager를 직접 등록하면 스프링 부트 캐시 자동 설정이 빠지므로 spring.cache 설정은 직접 읽는다.
 @EnableJpaAuditing //꼭 붙여야 작동한다!
 //@EnableJpaAuditing(modifyOnCreate = false) 를 하면 최초 등록시에 수정 데이터에 데이터를 반영하지 않음 -> 비추천
 @SpringBootApplication
@@ -38,4 +50,32 @@ public class DataJpaApplication {
 		};
 	}
 
+	/**
+	 * spring.cache 설정(cache-names, caffeine.spec)대로 Caffeine 캐시를 만들고 QueryResultCache로 감싼다.
+	 * -> 무효화 뒤에 늦게 도착한 오래된 조회 결과를 넣지 않고, 수정할 수 없는 복사본을 캐시한다.
+	 */
+	@Bean
+	public CacheManager cacheManager(CacheProperties cacheProperties) {
+		CaffeineCacheManager cacheManager = new CaffeineCacheManager() {
+			@Override
+			protected Cache adaptCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+				return new QueryResultCache(super.adaptCaffeineCache(name, cache));
+			}
+		};
+		cacheManager.setCacheSpecification(cacheProperties.getCaffeine().getSpec());
+		cacheManager.setCacheNames(cacheProperties.getCacheNames());
+		return cacheManager;
+	}
+
+	/**
+	 * Accept: application/cbor 요청이면 JSON 대신 CBOR(바이너리 JSON)로 응답한다. (서비스 간 호출용)
+	 * 숫자, 길이 정보가 바이너리로 들어가서 JSON보다 작고, 문자열로 바꾸고 다시 파싱하는 비용도 적다.
+	 * JSON과 같은 Jackson ObjectMapper 설정(날짜 포맷, 모듈 등)을 쓰도록 스프링 부트의 builder로 만든다.
+	 * 응답은 JSON과 마찬가지로 응답 스트림에 바로 쓴다. (전체를 byte[]로 만들지 않는다)
+	 */
+	@Bean
+	public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+		return new MappingJackson2CborHttpMessageConverter(builder.createXmlMapper(false).factory(new CBORFactory()).build());
+	}
+
 }
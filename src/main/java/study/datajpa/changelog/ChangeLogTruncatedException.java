@@ -0,0 +1,20 @@
+package study.datajpa.changelog;
+
+import lombok.Getter;
+
+/**
+ * 요청한 offset이 보관 기간(retention)을 넘어서 이미 잘려나간 경우
+ * 그 사이의 변경을 알 수 없으므로 컨슈머는 earliestOffset부터 다시 읽기 전에 전체를 다시 맞춰야 한다. (resync)
+ */
+@Getter
+public class ChangeLogTruncatedException extends RuntimeException {
+
+    private final long requestedOffset;
+    private final long earliestOffset; //지금 읽을 수 있는 가장 오래된 offset
+
+    public ChangeLogTruncatedException(long requestedOffset, long earliestOffset) {
+        super("변경 로그가 잘려나갔다. 요청 offset: " + requestedOffset + ", 가장 오래된 offset: " + earliestOffset);
+        this.requestedOffset = requestedOffset;
+        this.earliestOffset = earliestOffset;
+    }
+}
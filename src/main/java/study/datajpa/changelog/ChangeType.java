@@ -0,0 +1,6 @@
+package study.datajpa.changelog;
+
+public enum ChangeType {
+    INSERT, UPDATE, DELETE,
+    BULK //@Modifying 벌크 쿼리 -> 어떤 row가 바뀌었는지 알 수 없으므로 엔티티 id 없이 "이 테이블이 바뀌었다"만 남긴다.
+}
@@ -0,0 +1,51 @@
+package study.datajpa.changelog;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+
+@Getter
+@ToString
+public class EntityChange {
+
+    private final long offset; //로그 안에서의 순번, 컨슈머는 이 값으로 어디까지 읽었는지 기록한다.
+    private final String entityName;
+    private final Long entityId; //BULK 이면 null
+    private final ChangeType type;
+    private final LocalDateTime occurredAt;
+
+    //INSERT, UPDATE: 변경 후 값 중 컨슈머가 쓰는 속성 (ex. Member.username) -> 컨슈머가 DB를 다시 읽지 않아도 된다.
+    //값을 모르는 쓰기(JDBC write-behind 등)는 바꾸지 않은 속성을 넣지 않는다.
+    private final Map<String, Object> values;
+
+    //BULK: 벌크 update가 바꾼 속성, 알 수 없으면(delete, StatelessSession 등) null -> 모든 속성이 바뀌었다고 본다.
+    private final Set<String> bulkAttributes;
+
+    public EntityChange(long offset, String entityName, Long entityId, ChangeType type, LocalDateTime occurredAt,
+                        Map<String, Object> values, Set<String> bulkAttributes) {
+        this.offset = offset;
+        this.entityName = entityName;
+        this.entityId = entityId;
+        this.type = type;
+        this.occurredAt = occurredAt;
+        this.values = values;
+        this.bulkAttributes = bulkAttributes;
+    }
+
+    /**
+     * 이 변경으로 attribute가 바뀌었을 수 있는지 (ex. 나이만 바꾸는 벌크 update는 username 인덱스와 상관없다)
+     */
+    public boolean mayHaveChanged(String attribute) {
+        switch (type) {
+            case BULK:
+                return bulkAttributes == null || bulkAttributes.contains(attribute);
+            case UPDATE:
+                return values.containsKey(attribute);
+            default:
+                return true;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package study.datajpa.changelog;
+
+import lombok.RequiredArgsConstructor;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class EntityChangeListener {
+
+    /**
+     * @EntityListeners(EntityChangeListener.class) 를 붙인 엔티티의 변경을 EntityChangeLog에 기록
+     *
+     * 스프링 부트는 하이버네이트가 엔티티 리스너를 스프링 빈으로 생성하도록 설정해주기 때문에 생성자 주입을 받을 수 있다.
+     * (AuditingEntityListener와 같은 방식)
+     * @PostXxx 는 실제 SQL이 실행된 뒤(flush 시점)에 호출된다.
+     *
+     * 컨슈머가 DB를 다시 읽지 않도록 필요한 값(Member.username -> MemberUsernameIndex, Member.age -> MemberScrollService)을 변경에 같이 담는다.
+     * 커밋 시점이 아니라 flush 시점의 값을 잡아둔다. (그 뒤에 또 바뀌면 다음 flush에서 다시 기록된다)
+     */
+
+    private final EntityChangeLog changeLog;
+
+    @PostPersist
+    public void postPersist(Object entity) {
+        changeLog.record(entity.getClass().getSimpleName(), idOf(entity), ChangeType.INSERT, valuesOf(entity));
+    }
+
+    @PostUpdate
+    public void postUpdate(Object entity) {
+        changeLog.record(entity.getClass().getSimpleName(), idOf(entity), ChangeType.UPDATE, valuesOf(entity));
+    }
+
+    @PostRemove
+    public void postRemove(Object entity) {
+        changeLog.record(entity.getClass().getSimpleName(), idOf(entity), ChangeType.DELETE);
+    }
+
+    private Long idOf(Object entity) {
+        if (entity instanceof Member) {
+            return ((Member) entity).getId();
+        }
+        if (entity instanceof Team) {
+            return ((Team) entity).getId();
+        }
+        throw new IllegalArgumentException("지원하지 않는 엔티티: " + entity.getClass());
+    }
+
+    private Map<String, Object> valuesOf(Object entity) {
+        if (entity instanceof Member) {
+            Member member = (Member) entity;
+            Map<String, Object> values = new HashMap<>(4); //username은 null일 수 있으므로 Map.of 대신
+            values.put("username", member.getUsername());
+            values.put("age", member.getAge());
+            return values;
+        }
+        return Collections.emptyMap();
+    }
+}
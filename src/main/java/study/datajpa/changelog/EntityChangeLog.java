@@ -0,0 +1,179 @@
+package study.datajpa.changelog;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class EntityChangeLog {
+
+    /**
+     * Member, Team의 등록/수정/삭제를 순서대로 쌓아두는 프로세스 내부 변경 로그
+     *
+     * 다운스트림에서 findAll()로 전체를 다시 읽어 비교하지 않고, 마지막으로 읽은 offset 이후의 변경분만 가져가면 된다.
+     * 트랜잭션이 커밋된 뒤에만 로그에 추가되므로 롤백된 변경은 보이지 않는다.
+     *
+     * 메모리에 최근 retention 건만 원형 배열(ring buffer)에 보관한다. offset이 빈틈없이 이어지므로 offset으로 바로 위치를 찾는다.
+     * 컨슈머가 너무 뒤처져서 잘려나간 offset을 요청하면 ChangeLogTruncatedException -> 빠진 변경이 있다는 것을 알고 다시 맞춘다.
+     */
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final int retention;
+
+    private final EntityChange[] changes; //offset % retention 위치에 저장
+    private final Map<String, Long> consumerOffsets = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastOffsetByEntity = new ConcurrentHashMap<>();
+    private final String logId = UUID.randomUUID().toString(); //재시작하면 offset이 0부터 다시 시작하므로 로그를 구분하는 값
+    private final LocalDateTime startedAt = LocalDateTime.now(); //이 시각 이전의 변경은 로그에 없다.
+    private long nextOffset = 0;
+
+    public EntityChangeLog(ApplicationEventPublisher eventPublisher,
+                           @Value("${changelog.retention:100000}") int retention) {
+        this.eventPublisher = eventPublisher;
+        this.retention = retention;
+        this.changes = new EntityChange[retention];
+    }
+
+    /**
+     * 변경 기록 - 트랜잭션 안이면 커밋 후에 추가, 밖이면 바로 추가
+     */
+    public void record(String entityName, Long entityId, ChangeType type) {
+        record(entityName, entityId, type, Collections.emptyMap());
+    }
+
+    //values: 변경 후 값 중 컨슈머가 쓰는 속성 (EntityChange.values)
+    public void record(String entityName, Long entityId, ChangeType type, Map<String, Object> values) {
+        afterCommit(() -> append(entityName, entityId, type, values, null));
+    }
+
+    //벌크 update가 바꾼 속성을 알 때 - 상관없는 컨슈머는 건너뛸 수 있다. (ex. 나이만 바꾸면 username 인덱스는 그대로)
+    public void recordBulk(String entityName, Set<String> attributes) {
+        afterCommit(() -> append(entityName, null, ChangeType.BULK, Collections.emptyMap(), attributes));
+    }
+
+    /**
+     * 여러 row의 변경을 한번에 기록 - 커밋 후 콜백을 row마다 등록하지 않고 하나로 묶는다. (JDBC batch, 벌크 삭제 등)
+     */
+    public void recordAll(String entityName, Collection<Long> entityIds, ChangeType type) {
+        if (entityIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(entityIds); //호출한 쪽에서 컬렉션을 재사용해도 영향이 없도록 복사
+        afterCommit(() -> ids.forEach(id -> append(entityName, id, type, Collections.emptyMap(), null)));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void append(String entityName, Long entityId, ChangeType type, Map<String, Object> values, Set<String> bulkAttributes) {
+        EntityChange change;
+        synchronized (this) {
+            change = new EntityChange(nextOffset, entityName, entityId, type, LocalDateTime.now(), values, bulkAttributes);
+            changes[slot(nextOffset)] = change; //가득 찼으면 가장 오래된 변경을 덮어쓴다.
+            lastOffsetByEntity.put(entityName, nextOffset);
+            nextOffset++;
+        }
+        eventPublisher.publishEvent(change); //같은 프로세스 안에서 변경에 반응해야 하는 곳(캐시 등)은 @EventListener로 받으면 된다.
+    }
+
+    /**
+     * fromOffset(포함) 이후의 변경을 최대 limit 건 조회 - 읽는 건수만큼만 본다.
+     * @throws ChangeLogTruncatedException fromOffset이 이미 잘려나간 경우
+     */
+    public synchronized List<EntityChange> read(long fromOffset, int limit) {
+        long firstOffset = getFirstOffset();
+        if (fromOffset < firstOffset) {
+            throw new ChangeLogTruncatedException(fromOffset, firstOffset);
+        }
+        long toOffset = Math.min(nextOffset, fromOffset + limit);
+        List<EntityChange> result = new ArrayList<>((int) Math.max(0, toOffset - fromOffset));
+        for (long offset = fromOffset; offset < toOffset; offset++) {
+            result.add(changes[slot(offset)]);
+        }
+        return result;
+    }
+
+    /**
+     * since 이후에 처음 발생한 변경의 offset (없으면 nextOffset)
+     */
+    public synchronized long offsetAfter(LocalDateTime since) {
+        long low = getFirstOffset();
+        long high = nextOffset;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (changes[slot(mid)].getOccurredAt().isAfter(since)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 컨슈머별로 마지막에 커밋한 offset 다음부터 조회
+     * 잘려나갔으면 ChangeLogTruncatedException -> 다시 맞춘 뒤 commit(consumerId, e.getEarliestOffset() - 1) 하고 이어서 읽는다.
+     */
+    public List<EntityChange> poll(String consumerId, int limit) {
+        return read(consumerOffsets.getOrDefault(consumerId, 0L), limit);
+    }
+
+    /**
+     * 처리를 마친 뒤 호출 -> 다음 poll은 lastProcessedOffset 다음부터 읽는다.
+     */
+    public void commit(String consumerId, long lastProcessedOffset) {
+        consumerOffsets.merge(consumerId, lastProcessedOffset + 1, Math::max);
+    }
+
+    public synchronized long getNextOffset() {
+        return nextOffset;
+    }
+
+    /**
+     * 엔티티(테이블)별 버전 - 마지막 변경의 offset, 변경이 없었으면 -1
+     * 커밋 순서대로 증가하므로 "이 테이블이 바뀌었나?"를 DB 조회 없이 판단할 수 있다. (ex. 목록 ETag)
+     */
+    public long getLastOffset(String entityName) {
+        return lastOffsetByEntity.getOrDefault(entityName, -1L);
+    }
+
+    public String getLogId() {
+        return logId;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    //지금 읽을 수 있는 가장 오래된 offset
+    public synchronized long getFirstOffset() {
+        return Math.max(0, nextOffset - retention);
+    }
+
+    private int slot(long offset) {
+        return (int) (offset % retention);
+    }
+}
@@ -0,0 +1,95 @@
+package study.datajpa.changelog;
+
+import lombok.RequiredArgsConstructor;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Component
+@RequiredArgsConstructor
+public class ModifyingQueryChangeCapture implements BeanPostProcessor {
+
+    /**
+     * bulkAgePlus 같은 @Modifying 벌크 쿼리는 영속성 컨텍스트를 거치지 않아서 엔티티 리스너가 호출되지 않는다.
+     * 그래서 스프링 데이터 리포지토리 프록시에 인터셉터를 하나 끼워 넣어서, @Modifying 메서드가 실행되면
+     * 해당 리포지토리의 도메인 타입에 대한 BULK 변경을 기록한다.
+     * JpaRepository가 제공하는 deleteAllInBatch(), deleteAllByIdInBatch(ids) 등도 @Modifying 없이 벌크 delete를 날리므로 같이 기록한다.
+     * (id를 받는 deleteAllByIdInBatch는 id별 DELETE로)
+     * update 쿼리는 set 절에서 바꾸는 속성을 읽어서 같이 남긴다. -> 그 속성을 안 쓰는 컨슈머는 건너뛴다. (EntityChange.mayHaveChanged)
+     *
+     * BeanPostProcessor는 다른 빈보다 먼저 만들어지므로 EntityChangeLog는 실제로 필요할 때 꺼낸다.
+     */
+
+    private static final Pattern SET_CLAUSE = Pattern.compile("^\\s*update\\s+\\w+(?:\\s+(?:as\\s+)?\\w+)?\\s+set\\s+(.*?)(?:\\s+where\\s.*)?$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern ASSIGNMENT = Pattern.compile("(?:^|,)\\s*(?:\\w+\\.)?(\\w+)\\s*=");
+
+    private final ObjectProvider<EntityChangeLog> changeLog;
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport) { //리포지토리가 만들어지기 전(afterPropertiesSet)에 끼워 넣어야 한다.
+            ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(factory ->
+                    factory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) -> {
+                        String entityName = repositoryInformation.getDomainType().getSimpleName();
+                        proxyFactory.addAdvice(modifyingQueryInterceptor(entityName));
+                    }));
+        }
+        return bean;
+    }
+
+    private MethodInterceptor modifyingQueryInterceptor(String entityName) {
+        return invocation -> {
+            Object result = invocation.proceed();
+            Method method = invocation.getMethod();
+            if (method.getName().equals("deleteAllByIdInBatch") && invocation.getArguments()[0] instanceof Iterable) {
+                recordDeletes(entityName, (Iterable<?>) invocation.getArguments()[0]);
+            } else if (AnnotatedElementUtils.hasAnnotation(method, Modifying.class)) {
+                changeLog.getObject().recordBulk(entityName, updatedAttributes(method));
+            } else if (method.getName().endsWith("InBatch")) {
+                changeLog.getObject().record(entityName, null, ChangeType.BULK);
+            }
+            return result;
+        };
+    }
+
+    //update 쿼리의 set 절 속성, delete 이거나 알 수 없으면 null
+    private static Set<String> updatedAttributes(Method method) {
+        Query query = AnnotatedElementUtils.findMergedAnnotation(method, Query.class);
+        Matcher set = query == null ? null : SET_CLAUSE.matcher(query.value());
+        if (set == null || !set.matches()) {
+            return null;
+        }
+        Set<String> attributes = new HashSet<>();
+        Matcher assignment = ASSIGNMENT.matcher(set.group(1));
+        while (assignment.find()) {
+            attributes.add(assignment.group(1));
+        }
+        return attributes.isEmpty() ? null : attributes;
+    }
+
+    private void recordDeletes(String entityName, Iterable<?> ids) {
+        List<Long> deletedIds = new ArrayList<>();
+        for (Object id : ids) {
+            if (!(id instanceof Long)) { //Long id가 아니면 row를 특정할 수 없으므로 BULK
+                changeLog.getObject().record(entityName, null, ChangeType.BULK);
+                return;
+            }
+            deletedIds.add((Long) id);
+        }
+        changeLog.getObject().recordAll(entityName, deletedIds, ChangeType.DELETE);
+    }
+}
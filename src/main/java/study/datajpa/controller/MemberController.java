@@ -1,26 +1,71 @@
 package study.datajpa.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import study.datajpa.changelog.ChangeLogTruncatedException;
+import study.datajpa.changelog.ChangeType;
+import study.datajpa.changelog.EntityChange;
+import study.datajpa.changelog.EntityChangeLog;
+import study.datajpa.dto.MemberChangesDto;
 import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberListDto;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.dto.UsernameOnlyDto;
 import study.datajpa.entity.Member;
 import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.MemberRepositoryCustom;
+import study.datajpa.service.MemberScrollService;
 
 import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
     private final MemberRepository memberRepository;
+    private final EntityChangeLog changeLog;
+    private final MemberScrollService memberScrollService;
 
+    @Value("${member.sync.lag-ms:5000}")
+    private long syncLagMs;
+
+    private static final String SCROLL_CURSOR = "X-Scroll-Cursor";
+    private static final LocalDateTime SYNC_START = LocalDateTime.of(1970, 1, 1, 0, 0); //처음 동기화의 워터마크
+
+    /**
+     * 조건부 GET - 응답에 ETag, Last-Modified(회원의 lastModifiedDate)를 내려준다.
+     * 클라이언트가 If-None-Match / If-Modified-Since 로 다시 요청했을 때 그 사이 수정이 없으면
+     * lastModifiedDate 컬럼 하나만 PK로 조회하고 본문 없이 304 Not Modified로 끝낸다. (엔티티 로딩, 직렬화 없음)
+     */
     @GetMapping("/member1/{id}")
-    public String findMember1(@PathVariable("id") Long id) {
+    public String findMember1(@PathVariable("id") Long id, WebRequest request) {
+
+        LocalDateTime lastModified = memberRepository.findLastModifiedDateById(id).orElse(null);
+        if (lastModified != null && request.checkNotModified(weakEtag(version(lastModified)), epochMillis(lastModified))) {
+            return null; //304
+        }
 
         Member member = memberRepository.findById(id).get();
 
@@ -28,14 +73,26 @@ public class MemberController {
     }
 
     /**
+     * 도메인 클래스 컨버터
+     *    @GetMapping("/member2/{id}")
+     *    public String findMember2(@PathVariable("id") Member member) {
+     *        return member.getUsername();
+     *    }
      * HTTP 요청은 회원 id 를 받지만 도메인 클래스 컨버터가 중간에 동작해서 회원 엔티티 객체를 반환
      * 도메인 클래스 컨버터도 리파지토리를 사용해서 엔티티를 찾음
      * -> 주의: 도메인 클래스 컨버터로 엔티티를 파라미터로 받으면, 이 엔티티는 단순 조회용으로만 사용해야 한다.
      * (트랜잭션이 없는 범위에서 엔티티를 조회했으므로, 엔티티를 변경해도 DB에 반영되지 않는다.)
+     *
+     * 그런데 도메인 클래스 컨버터는 username 하나를 쓰려고 회원 엔티티 전체를 조회한다.
+     * -> id로 프로젝션 조회를 해서 필요한 컬럼(username)만 select 하도록 변경
+     *    select m.username from member m where m.member_id = ?
+     * 없는 id면 404
      */
     @GetMapping("/member2/{id}")
-    public String findMember2(@PathVariable("id") Member member) {
-        return member.getUsername();
+    public String findMember2(@PathVariable("id") Long id) {
+        return memberRepository.findProjectionById(id, UsernameOnlyDto.class)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND))
+                .getUsername();
     }
 
 
@@ -60,10 +117,185 @@ public class MemberController {
      *  @Qualifier("member") Pageable memberPageable,
      *  @Qualifier("order") Pageable orderPageable, ...
      */
+    /**
+     * expand: 응답에 같이 내려줄 연관관계 -> 지정한 연관관계만 fetch 조인한다. (지정하지 않으면 팀 조인 없이 회원만 조회)
+     * 예) /members?page=0&size=20&expand=team
+     * 응답은 엔티티를 내려주던 때와 같은 속성(MemberListDto)이고, expand=team 이면 teamName이 추가된다.
+     *
+     * Accept: application/cbor 를 보내면 같은 내용을 CBOR로 받는다. (DataJpaApplication#cborHttpMessageConverter)
+     *
+     * 조건부 GET - ETag는 변경 로그의 테이블 버전(회원 테이블의 마지막 변경 offset)으로 만든다. DB 조회 없이 바로 304
+     * 수정, 삭제, 벌크 연산, JDBC write-behind, StatelessSession 등 모든 쓰기 경로가 변경 로그에 남으므로 놓치는 변경이 없다.
+     * expand=team 이면 팀 테이블 버전도 같이 본다.
+     * 주의: 이 프로세스를 거친 쓰기만 알 수 있다. (여러 인스턴스로 띄우면 DB에 버전 컬럼/테이블을 두어야 한다)
+     * Last-Modified는 삭제를 표현할 수 없으므로 내려주지 않는다.
+     */
     @GetMapping("/members")
-    public Page<Member> list(@PageableDefault(size = 5, sort = "username") Pageable pageable) {
-        Page<Member> page = memberRepository.findAll(pageable);
-        return page;
+    public Page<MemberListDto> list(@PageableDefault(size = 5, sort = "username") Pageable pageable,
+                                    @RequestParam(value = "expand", defaultValue = "") Set<String> expand,
+                                    WebRequest request) {
+        checkExpand(expand);
+        String tableVersion = changeLog.getLogId() + "-" + changeLog.getLastOffset("Member");
+        if (expand.contains("team")) {
+            tableVersion += "-" + changeLog.getLastOffset("Team");
+        }
+        if (request.checkNotModified(weakEtag(tableVersion))) {
+            return null; //304
+        }
+
+        Page<Member> page = memberRepository.findAll(pageable, expand);
+        return page.map(member -> new MemberListDto(member, teamName(member, expand)));
+    }
+
+    /**
+     * 예) /members/1?expand=team
+     */
+    @GetMapping("/members/{id}")
+    public MemberDto findMember(@PathVariable("id") Long id,
+                                @RequestParam(value = "expand", defaultValue = "") Set<String> expand) {
+        Member member = memberRepository.findById(id, checkExpand(expand))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        return toDto(member, expand);
+    }
+
+    private Set<String> checkExpand(Set<String> expand) {
+        if (!MemberRepositoryCustom.EXPANDABLE.containsAll(expand)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "expand 가능한 값: " + MemberRepositoryCustom.EXPANDABLE);
+        }
+        return expand;
+    }
+
+    //ETag는 표현(JSON, CBOR)이 달라도 내용이 같으면 같은 값이므로 weak(W/)로 내려준다.
+    private static String weakEtag(String version) {
+        return "W/\"" + version + "\"";
+    }
+
+    private static String version(LocalDateTime lastModified) { //마이크로초 단위 (DB에 저장되는 정밀도)
+        Instant instant = lastModified.atZone(ZoneId.systemDefault()).toInstant();
+        return Long.toHexString(instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1_000);
+    }
+
+    private static long epochMillis(LocalDateTime lastModified) {
+        return lastModified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    //expand 하지 않은 연관관계는 건드리지 않는다. (건드리면 지연 로딩 쿼리가 나간다)
+    private MemberDto toDto(Member member, Set<String> expand) {
+        return new MemberDto(member.getId(), member.getUsername(), teamName(member, expand));
+    }
+
+    private static String teamName(Member member, Set<String> expand) {
+        return expand.contains("team") && member.getTeam() != null ? member.getTeam().getName() : null;
+    }
+
+    /**
+     * 동적 검색 - 조건은 모두 선택, 정렬은 Pageable의 sort
+     * 예) /members/search?username=user&ageGoe=10&ageLoe=20&teamName=teamA&sort=age,desc
+     */
+    @GetMapping("/members/search")
+    public Page<MemberDto> search(MemberSearchCondition condition,
+                                  @PageableDefault(size = 20, sort = "username") Pageable pageable) {
+        return memberRepository.search(condition, pageable).map(MemberDto::new);
+    }
+
+    /**
+     * 무한 스크롤 - Slice는 count 쿼리 없이 다음 페이지가 있는지(hasNext)만 알려준다.
+     * 예) 처음: /members/scroll?age=10&page=0&size=20 -> 응답 헤더 X-Scroll-Cursor
+     *     다음: /members/scroll?age=10&page=1&size=20&cursor={X-Scroll-Cursor}
+     * 미리 조회한 다음 Slice는 커서별로 보관한다. (커서 없이 요청하면 새 커서를 발급)
+     */
+    @GetMapping("/members/scroll")
+    public Slice<MemberDto> scroll(@RequestParam("age") int age,
+                                   @RequestParam(value = "cursor", required = false) String cursor,
+                                   @PageableDefault(size = 20, sort = "username") Pageable pageable,
+                                   HttpServletResponse response) {
+        String scrollCursor = cursor == null ? memberScrollService.newCursor() : cursor;
+        response.setHeader(SCROLL_CURSOR, scrollCursor);
+        return memberScrollService.scrollByAge(scrollCursor, age, pageable);
+    }
+
+    /**
+     * 자동완성
+     * 예) /members/autocomplete?prefix=user1&size=10
+     */
+    @GetMapping("/members/autocomplete")
+    public List<String> autocomplete(@RequestParam("prefix") String prefix,
+                                     @RequestParam(value = "size", defaultValue = "10") int size) {
+        PageRequest topK = PageRequest.of(0, Math.max(1, Math.min(size, 50)), Sort.by("username")); //1 ~ 50건 (0 이하는 PageRequest가 예외 -> 500)
+        return memberRepository.findByUsernameStartingWith(prefix, topK, UsernameOnlyDto.class).stream()
+                .map(UsernameOnlyDto::getUsername)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 증분 동기화
+     * 예) 처음: /members/changes?size=100 (전체를 페이지로 받는다)
+     *     이후: /members/changes?since=2021-09-01T10:00:00&lastId=0&deletedFrom=120&logId=...&size=100
+     *
+     * 응답의 nextSince, nextLastId, nextDeletedFrom, logId 를 다음 요청에 넘기면 그 이후 변경분만 받는다.
+     * - 등록, 수정: lastModifiedDate 워터마크 (커밋이 늦은 트랜잭션을 놓치지 않도록 최근 member.sync.lag-ms 이내 수정분은 다음에)
+     * - 삭제: 변경 로그(EntityChangeLog)의 DELETE 기록을 tombstone으로, 로그 offset 커서(deletedFrom)로 따로 페이징한다.
+     *   같은 삭제가 다시 내려오지 않는다. (재시도 등으로 중복될 수는 있으므로 클라이언트는 멱등하게 처리한다.)
+     *
+     * 변경 로그는 메모리에만 있으므로 서버가 재시작됐거나(logId가 다름) 로그가 잘려나가서 삭제를 빠짐없이 알 수 없으면
+     * 410 Gone -> 클라이언트는 처음부터 다시 동기화해야 한다.
+     */
+    @GetMapping("/members/changes")
+    public MemberChangesDto changes(@RequestParam(value = "since", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+                                    @RequestParam(value = "lastId", defaultValue = "0") Long lastId,
+                                    @RequestParam(value = "deletedFrom", required = false) Long deletedFrom,
+                                    @RequestParam(value = "logId", required = false) String logId,
+                                    @RequestParam(value = "size", defaultValue = "100") int size) {
+
+        int limit = Math.max(1, Math.min(size, 1000));
+        long tombstoneFrom = tombstoneCursor(since, deletedFrom, logId);
+
+        LocalDateTime until = LocalDateTime.now().minus(Duration.ofMillis(syncLagMs));
+        List<Member> changed = memberRepository.findChangedSince(since == null ? SYNC_START : since, lastId, until, PageRequest.of(0, limit));
+
+        List<EntityChange> scanned;
+        try {
+            scanned = changeLog.read(tombstoneFrom, limit);
+        } catch (ChangeLogTruncatedException e) {
+            throw new ResponseStatusException(HttpStatus.GONE, "변경 로그가 잘려나갔다. 처음부터 다시 동기화해야 한다.", e);
+        }
+        List<Long> deletedIds = scanned.stream()
+                .filter(change -> change.getEntityName().equals("Member") && change.getType() == ChangeType.DELETE)
+                .map(EntityChange::getEntityId)
+                .collect(Collectors.toList());
+
+        LocalDateTime nextSince = since == null ? SYNC_START : since;
+        Long nextLastId = lastId;
+        if (!changed.isEmpty()) {
+            Member last = changed.get(changed.size() - 1);
+            nextSince = last.getLastModifiedDate();
+            nextLastId = last.getId();
+        }
+
+        List<MemberDto> dtos = changed.stream().map(MemberDto::new).collect(Collectors.toList());
+        return new MemberChangesDto(dtos, deletedIds, nextSince, nextLastId, tombstoneFrom + scanned.size(), changeLog.getLogId());
+    }
+
+    private long tombstoneCursor(LocalDateTime since, Long deletedFrom, String logId) {
+        if (deletedFrom != null || logId != null) {
+            if (deletedFrom == null || logId == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "deletedFrom과 logId는 같이 넘겨야 한다.");
+            }
+            if (!logId.equals(changeLog.getLogId())) {
+                throw new ResponseStatusException(HttpStatus.GONE, "서버가 재시작되어 이전 삭제 기록이 없다. 처음부터 다시 동기화해야 한다.");
+            }
+            return deletedFrom;
+        }
+        if (since == null) {
+            return changeLog.getNextOffset(); //처음 동기화 - 지금까지 삭제된 회원은 받을 목록에 없다.
+        }
+
+        //커서 없이 since만 넘긴 경우 - since 이후의 삭제가 로그에 모두 남아 있어야 한다.
+        long from = changeLog.offsetAfter(since);
+        if (since.isBefore(changeLog.getStartedAt()) || (from == changeLog.getFirstOffset() && from > 0)) {
+            throw new ResponseStatusException(HttpStatus.GONE, "since 이후의 삭제 기록이 남아있지 않다. 처음부터 다시 동기화해야 한다.");
+        }
+        return from;
     }
 
     /** API에 엔티티를 그대로 노출하는 것은 절대 안된다! DTO로 바꿔서 반환하여야 한다.
@@ -0,0 +1,26 @@
+package study.datajpa.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.datajpa.dto.TeamDto;
+import study.datajpa.repository.TeamRepository;
+
+@RestController
+@RequiredArgsConstructor
+public class TeamController {
+
+    private final TeamRepository teamRepository;
+
+    /**
+     * 팀 목록 + 팀별 회원 목록
+     * 예) /teams?page=0&size=20
+     */
+    @GetMapping("/teams")
+    public Page<TeamDto> list(@PageableDefault(size = 20, sort = "id") Pageable pageable) {
+        return teamRepository.findTeamsWithMembers(pageable);
+    }
+}
@@ -0,0 +1,29 @@
+package study.datajpa.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class MemberChangesDto {
+
+    private List<MemberDto> changed; //since 이후 등록, 수정된 회원
+    private List<Long> deletedIds; //삭제된 회원 id (tombstone), 변경 로그 offset으로 따로 페이징
+
+    //다음 요청에 그대로 넘기면 되는 워터마크
+    private LocalDateTime nextSince;
+    private Long nextLastId;
+    private long nextDeletedFrom; //tombstone 커서 (변경 로그 offset)
+    private String logId; //변경 로그 id, 다음 요청에 같이 넘긴다. (서버가 재시작되면 바뀐다)
+
+    public MemberChangesDto(List<MemberDto> changed, List<Long> deletedIds, LocalDateTime nextSince, Long nextLastId,
+                            long nextDeletedFrom, String logId) {
+        this.changed = changed;
+        this.deletedIds = deletedIds;
+        this.nextSince = nextSince;
+        this.nextLastId = nextLastId;
+        this.nextDeletedFrom = nextDeletedFrom;
+        this.logId = logId;
+    }
+}
@@ -0,0 +1,36 @@
+package study.datajpa.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import study.datajpa.entity.Member;
+
+import java.time.LocalDateTime;
+
+/**
+ * GET /members 응답 - 엔티티(Page<Member>)를 그대로 내려주던 때와 같은 속성을 내려준다. (기존 클라이언트 호환)
+ * teamName은 expand=team 일 때만 내려준다.
+ */
+@Data
+public class MemberListDto {
+
+    private Long id;
+    private String username;
+    private int age;
+    private LocalDateTime createdDate;
+    private LocalDateTime lastModifiedDate;
+    private String createdBy;
+    private String lastModifiedBy;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String teamName;
+
+    public MemberListDto(Member m, String teamName) {
+        this.id = m.getId();
+        this.username = m.getUsername();
+        this.age = m.getAge();
+        this.createdDate = m.getCreatedDate();
+        this.lastModifiedDate = m.getLastModifiedDate();
+        this.createdBy = m.getCreatedBy();
+        this.lastModifiedBy = m.getLastModifiedBy();
+        this.teamName = teamName;
+    }
+}
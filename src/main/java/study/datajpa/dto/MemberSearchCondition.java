@@ -0,0 +1,13 @@
+package study.datajpa.dto;
+
+import lombok.Data;
+
+@Data
+public class MemberSearchCondition {
+
+    //모두 선택 조건 - null이면 조건에서 빠진다.
+    private String username; //앞부분 일치 (username like 'xxx%')
+    private Integer ageGoe; //나이 >=
+    private Integer ageLoe; //나이 <=
+    private String teamName;
+}
@@ -0,0 +1,19 @@
+package study.datajpa.dto;
+
+import lombok.Data;
+
+import java.util.Collections;
+import java.util.List;
+
+@Data
+public class TeamDto {
+
+    private Long id;
+    private String name;
+    private List<TeamMemberDto> members = Collections.emptyList(); //회원 조회 후 채운다. (TeamRepository.findTeamsWithMembers)
+
+    public TeamDto(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+}
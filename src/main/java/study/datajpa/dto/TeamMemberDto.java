@@ -0,0 +1,21 @@
+package study.datajpa.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+@Data
+public class TeamMemberDto {
+
+    @JsonIgnore
+    private Long teamId; //팀별로 묶을 때만 사용
+    private Long id;
+    private String username;
+    private int age;
+
+    public TeamMemberDto(Long teamId, Long id, String username, int age) {
+        this.teamId = teamId;
+        this.id = id;
+        this.username = username;
+        this.age = age;
+    }
+}
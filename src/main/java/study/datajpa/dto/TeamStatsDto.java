@@ -0,0 +1,19 @@
+package study.datajpa.dto;
+
+import lombok.Data;
+
+@Data
+public class TeamStatsDto {
+
+    private Long teamId;
+    private String teamName;
+    private long memberCount;
+    private double averageAge;
+
+    public TeamStatsDto(Long teamId, String teamName, long memberCount, Double averageAge) { //avg()는 Double을 반환하고, 회원이 없는 팀은 null이 넘어온다.
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.memberCount = memberCount;
+        this.averageAge = averageAge == null ? 0 : averageAge;
+    }
+}
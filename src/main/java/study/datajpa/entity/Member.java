@@ -1,10 +1,13 @@
 package study.datajpa.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
+import study.datajpa.changelog.EntityChangeListener;
 
 import javax.persistence.*;
 
 @Entity
+@EntityListeners(EntityChangeListener.class) //BaseEntity의 AuditingEntityListener에 더해서 변경 로그도 남긴다. (username 인덱스는 변경 로그를 구독)
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED) //Protect 파라미터 없는 생성자 만들어준다.
 @ToString(of = {"id", "username", "age"}) //team을 포함하면 연관관계 타서 무한루프가 될 수 있기 때문에 연관 관계 필드는 제외하는게 좋다.
@@ -24,6 +27,11 @@ import javax.persistence.*;
         name="Member.findByUsername",
         query="select m from Member m where m.username = :username"
 )
+@Table(indexes = {
+        @Index(name = "idx_member_team_age", columnList = "team_id, age"), //팀 조건이 붙은 조회는 해당 팀의 row만 읽도록 (team_id, age) 복합 인덱스를 건다.
+        @Index(name = "idx_member_username", columnList = "username"), //username = ? 조회와 username like 'prefix%' 검색이 인덱스 range scan으로 끝난다.
+        @Index(name = "idx_member_modified", columnList = "lastModifiedDate, member_id") //변경분 동기화(findChangedSince)용 seek 인덱스
+})
 public class Member extends BaseEntity {
     @Id
     @GeneratedValue
@@ -53,8 +61,28 @@ public class Member extends BaseEntity {
             changeTeam(team);
         }
     }
+    /**
+     * 연관관계 편의 메서드 - 팀의 members 컬렉션(지연 로딩)을 초기화하지 않는다.
+     *
+     * team.getMembers().add(this)는 컬렉션이 아직 로딩되지 않았으면 하이버네이트가 add를 큐에 쌓아두었다가
+     * 나중에 컬렉션을 로딩할 때 반영한다. (mappedBy 쪽 bag이라서 가능, 팀 인원 수만큼 select 하지 않는다)
+     * remove는 큐에 쌓이지 않고 컬렉션 전체를 로딩하므로, 이전 팀의 컬렉션이 이미 로딩된 경우에만 지운다.
+     * 로딩되지 않은 컬렉션은 나중에 DB(FK)에서 읽으므로 flush 이후에는 맞는 값이 나온다.
+     *
+     * 팀이 아직 초기화되지 않은 프록시면 getMembers() 호출만으로 팀 select가 나가므로 건드리지 않는다.
+     */
     public void changeTeam(Team team) {
+        Team previous = this.team;
+        if (previous == team) {
+            return;
+        }
         this.team = team;
-        team.getMembers().add(this);
+
+        if (previous != null && Hibernate.isInitialized(previous) && Hibernate.isInitialized(previous.getMembers())) {
+            previous.getMembers().remove(this);
+        }
+        if (Hibernate.isInitialized(team)) {
+            team.getMembers().add(this);
+        }
     }
 }
\ No newline at end of file
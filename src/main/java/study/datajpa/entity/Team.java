@@ -1,12 +1,14 @@
 package study.datajpa.entity;
 
 import lombok.*;
+import study.datajpa.changelog.EntityChangeListener;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@EntityListeners(EntityChangeListener.class)
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
@@ -0,0 +1,136 @@
+package study.datajpa.repository;
+
+import java.util.Arrays;
+
+/**
+ * long -> long 멀티맵 (키 하나에 값 여러 개) - MemberUsernameIndex 용
+ *
+ * HashMap<Long, ...>은 키, 값마다 객체(박싱, Entry)가 생겨서 항목당 수십~백 바이트를 쓴다.
+ * 여기서는 long[] 두 개에 키와 값을 나란히 넣는 오픈 어드레싱(linear probing) 해시 테이블로 항목당 32~64 바이트만 쓴다.
+ * 같은 키는 충돌한 항목처럼 옆 칸에 이어서 들어가고, 조회는 빈 칸을 만날 때까지 훑으면서 키가 같은 값을 모은다.
+ *
+ * 키 0은 빈 칸 표시로 쓰므로 넣을 수 없다. 동기화하지 않으므로 사용하는 쪽에서 락을 건다.
+ */
+class LongMultiMap {
+
+    private static final long[] EMPTY = new long[0];
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+
+    LongMultiMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedSize * 2 - 1)) << 1; //2의 거듭제곱, 사용률 50% 이하
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * 같은 (key, value)가 이미 있으면 넣지 않는다.
+     */
+    void put(long key, long value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("key 0은 사용할 수 없다.");
+        }
+        int slot = home(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key && values[slot] == value) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+    }
+
+    long[] get(long key) {
+        long[] found = EMPTY;
+        int count = 0;
+        for (int slot = home(key); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, Math.max(1, count * 2));
+                }
+                found[count++] = values[slot];
+            }
+        }
+        return count == found.length ? found : Arrays.copyOf(found, count);
+    }
+
+    //키마다 값이 하나인 경우 (id -> 해시)
+    long getFirst(long key, long defaultValue) {
+        for (int slot = home(key); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return defaultValue;
+    }
+
+    boolean remove(long key, long value) {
+        int slot = home(key);
+        while (keys[slot] != key || values[slot] != value) {
+            if (keys[slot] == 0) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        shiftBack(slot);
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 지운 칸 뒤로 이어진 항목 중 원래 자리(home)가 빈 칸 이전인 항목을 앞으로 당긴다. (tombstone 없이 삭제)
+     */
+    private void shiftBack(int empty) {
+        int slot = empty;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (keys[slot] == 0) {
+                break;
+            }
+            int home = home(keys[slot]);
+            boolean stays = empty <= slot ? (empty < home && home <= slot) : (empty < home || home <= slot);
+            if (!stays) {
+                keys[empty] = keys[slot];
+                values[empty] = values[slot];
+                empty = slot;
+            }
+        }
+        keys[empty] = 0;
+        values[empty] = 0;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldValues.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = home(oldKeys[i]);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private int home(long key) {
+        long h = key * 0x9E3779B97F4A7C15L; //비슷한 값(연속된 id)이 한 곳에 몰리지 않도록 섞는다.
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,192 @@
+package study.datajpa.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import study.datajpa.changelog.ChangeType;
+import study.datajpa.changelog.EntityChangeLog;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "member.write-behind.enabled", havingValue = "true") //기본은 꺼져 있고, 설정으로 켰을 때만 빈으로 등록된다.
+public class MemberAgeWriteBehindBuffer {
+
+    /**
+     * 회원 나이처럼 자주 바뀌는 작은 변경을 매번 트랜잭션 + update 쿼리로 날리지 않고
+     * 메모리에 모아 두었다가 JDBC batch로 한번에 반영한다. (write-behind)
+     *
+     * 같은 회원 id에 대한 변경은 마지막 값 하나로 합쳐진다.
+     * 건수(batch-size)가 차거나 주기(flush-interval-ms)가 되면 flush 하고, 애플리케이션 종료 시에도 남은 변경을 flush 한다.
+     *
+     * 주의: 영속성 컨텍스트를 거치지 않으므로 flush 전까지는 DB와 엔티티의 값이 다를 수 있다. (벌크 연산과 같은 문제)
+     * 엔티티 리스너도 타지 않으므로 반영된 회원은 직접 변경 로그(EntityChangeLog)에 UPDATE로 남긴다.
+     */
+
+    private static final String UPDATE_SQL = "update member set age = ?, last_modified_date = ? where member_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityChangeLog changeLog;
+    private final int batchSize;
+    private final long flushIntervalMs;
+
+    private final Map<Long, Integer> pending = new ConcurrentHashMap<>();
+    private final AtomicLong oldestPendingAt = new AtomicLong(); //0이면 대기중인 변경 없음
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong flushedCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "member-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MemberAgeWriteBehindBuffer(JdbcTemplate jdbcTemplate,
+                                      EntityChangeLog changeLog,
+                                      @Value("${member.write-behind.batch-size:500}") int batchSize,
+                                      @Value("${member.write-behind.flush-interval-ms:1000}") long flushIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.changeLog = changeLog;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::scheduledFlush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flush(); //종료 시점에 남은 변경을 반드시 반영
+    }
+
+    public void updateAge(Long memberId, int age) {
+        pending.put(memberId, age); //같은 id면 덮어쓰기 -> 마지막 값만 반영
+        oldestPendingAt.compareAndSet(0, System.currentTimeMillis());
+        enqueuedCount.incrementAndGet();
+
+        if (pending.size() >= batchSize) {
+            scheduler.execute(this::scheduledFlush);
+        }
+    }
+
+    public synchronized int flush() {
+        long drainStartedAt = System.currentTimeMillis();
+        if (pending.isEmpty()) {
+            resetLag(drainStartedAt);
+            return 0;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batch = new ArrayList<>(Math.min(pending.size(), batchSize));
+        int flushed = 0;
+
+        for (Long memberId : pending.keySet()) {
+            Integer age = pending.remove(memberId); //꺼내는 순간 제거해야 flush 중에 들어온 새 값이 유실되지 않는다.
+            if (age == null) {
+                continue;
+            }
+            batch.add(new Object[]{age, now, memberId});
+            if (batch.size() == batchSize) {
+                flushed += executeBatch(batch);
+            }
+        }
+        flushed += executeBatch(batch);
+        resetLag(drainStartedAt);
+        return flushed;
+    }
+
+    /**
+     * 꺼내는 동안 새로 들어온 변경은 이번 flush에 안 들어갔을 수 있으므로, 큐가 비었을 때만 0으로 되돌린다.
+     * 남아있는 변경은 꺼내기 시작한 뒤에 들어온 것이므로 그 시각을 기준으로 잡는다.
+     */
+    private void resetLag(long drainStartedAt) {
+        if (!pending.isEmpty()) {
+            oldestPendingAt.set(drainStartedAt);
+            return;
+        }
+        oldestPendingAt.set(0);
+        if (!pending.isEmpty()) { //0으로 바꾸는 사이에 들어온 변경 (updateAge의 compareAndSet이 실패했을 수 있다)
+            oldestPendingAt.compareAndSet(0, drainStartedAt);
+        }
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException e) { //예외가 밖으로 나가면 이후 주기 실행이 전부 취소된다. 실패분은 다시 큐에 들어가 있으므로 다음 주기에 재시도
+            log.warn("member write-behind flush failed, will retry", e);
+        }
+    }
+
+    private int executeBatch(List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int[] rowCounts;
+        try {
+            rowCounts = jdbcTemplate.batchUpdate(UPDATE_SQL, batch);
+        } catch (DataAccessException e) {
+            for (Object[] args : batch) { //실패한 변경은 다시 넣어서 다음 flush 때 재시도 (그 사이 들어온 새 값이 있으면 새 값 우선)
+                pending.putIfAbsent((Long) args[2], (Integer) args[0]);
+            }
+            oldestPendingAt.compareAndSet(0, System.currentTimeMillis());
+            throw e;
+        }
+
+        //그 사이 삭제된 회원은 0 row -> 반영된 것으로 세지 않고 버린다. (SUCCESS_NO_INFO는 드라이버가 건수를 모르는 경우)
+        int updated = 0;
+        for (int i = 0; i < rowCounts.length; i++) {
+            if (rowCounts[i] > 0 || rowCounts[i] == Statement.SUCCESS_NO_INFO) {
+                Object[] args = batch.get(i);
+                changeLog.record("Member", (Long) args[2], ChangeType.UPDATE, Map.of("age", args[0])); //트랜잭션 밖이므로 바로 기록된다.
+                updated++;
+            }
+        }
+        skippedCount.addAndGet(batch.size() - updated);
+        flushedCount.addAndGet(updated);
+        batch.clear();
+        return updated;
+    }
+
+    /** 모니터링용 지표 **/
+    public int getQueueSize() {
+        return pending.size();
+    }
+
+    public long getLagMillis() { //가장 오래 기다린 변경이 들어온 뒤 지난 시간
+        long oldest = oldestPendingAt.get();
+        return oldest == 0 ? 0 : System.currentTimeMillis() - oldest;
+    }
+
+    public long getEnqueuedCount() {
+        return enqueuedCount.get();
+    }
+
+    public long getFlushedCount() { //enqueued - flushed 만큼이 합쳐져서(coalesce) 절약된 update 수
+        return flushedCount.get();
+    }
+
+    public long getSkippedCount() { //flush 시점에 이미 삭제되어 반영되지 않은 변경 수
+        return skippedCount.get();
+    }
+}
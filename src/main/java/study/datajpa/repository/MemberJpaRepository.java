@@ -1,12 +1,24 @@
 package study.datajpa.repository;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import study.datajpa.changelog.ChangeType;
+import study.datajpa.changelog.EntityChangeLog;
 import study.datajpa.entity.Member;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Repository
 public class MemberJpaRepository {
@@ -14,6 +26,17 @@ public class MemberJpaRepository {
     @PersistenceContext
     private EntityManager em;
 
+    @Autowired
+    private EntityChangeLog changeLog;
+
+    private TransactionTemplate chunkTx; //벌크 삭제 chunk마다 새 트랜잭션
+
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.chunkTx = new TransactionTemplate(transactionManager);
+        this.chunkTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
     public Member save(Member member) {
         em.persist(member);
         return member;
@@ -23,6 +46,70 @@ public class MemberJpaRepository {
         em.remove(member);
     }
 
+    /** 엔티티를 로딩하지 않는 삭제
+     *
+     * em.remove()는 영속 상태의 엔티티가 필요해서 삭제할 회원을 전부 조회해야 한다.
+     * 대신 id만 조회해서 batchSize 단위로 delete ... where id in (...) 벌크 쿼리를 날린다.
+     * 한번에 너무 많은 row를 지우면 락과 undo가 커지므로 나눠서 지우고, chunk마다 새 트랜잭션으로 커밋해서 락을 바로 푼다.
+     * -> 호출하는 쪽 트랜잭션에 묶이면 나눈 의미가 없으므로 트랜잭션 밖에서 호출해야 한다. (중간에 실패하면 앞 chunk는 지워진 상태)
+     *
+     * 지운 id를 알고 있으므로 변경 로그에는 id별 DELETE로 남긴다. (증분 동기화 tombstone, username 인덱스 등)
+     * 벌크 연산이라 영속성 컨텍스트에 남아있는 회원은 DB와 달라지므로 초기화한다.
+     * JPQL 실행 전 자동 flush는 쿼리와 테이블이 겹치는 엔티티만 flush 하므로, 초기화 전에 직접 flush 해서 다른 엔티티의 변경을 잃지 않게 한다.
+     */
+    public int deleteByTeamInBatches(Long teamId, int batchSize) {
+        assertBatchSize(batchSize);
+        assertNoTransaction();
+        AtomicInteger deleted = new AtomicInteger();
+        List<Long> ids;
+        do {
+            ids = chunkTx.execute(status -> {
+                List<Long> chunk = em.createQuery("select m.id from Member m where m.team.id = :teamId order by m.id", Long.class)
+                        .setParameter("teamId", teamId)
+                        .setMaxResults(batchSize)
+                        .getResultList();
+                deleted.addAndGet(deleteByIds(chunk));
+                return chunk;
+            });
+        } while (ids.size() == batchSize);
+        return deleted.get();
+    }
+
+    public int deleteAllByIdInBatches(Collection<Long> ids, int batchSize) {
+        assertBatchSize(batchSize);
+        assertNoTransaction();
+        List<Long> idList = new ArrayList<>(ids);
+        int deleted = 0;
+        for (int from = 0; from < idList.size(); from += batchSize) {
+            List<Long> chunk = idList.subList(from, Math.min(from + batchSize, idList.size()));
+            deleted += chunkTx.execute(status -> deleteByIds(chunk));
+        }
+        return deleted;
+    }
+
+    private int deleteByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int count = em.createQuery("delete from Member m where m.id in :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+        changeLog.recordAll("Member", ids, ChangeType.DELETE);
+
+        em.flush();
+        em.clear();
+        return count;
+    }
+
+    private void assertNoTransaction() {
+        Assert.state(!TransactionSynchronizationManager.isActualTransactionActive(),
+                "chunk마다 커밋하므로 트랜잭션 밖에서 호출해야 한다.");
+    }
+
+    private static void assertBatchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize는 1 이상이어야 한다."); //0이면 chunk가 줄지 않아서 끝나지 않는다.
+    }
+
     public List<Member> findAll() {
         return em.createQuery("select m from Member m", Member.class) //Member.class는 반환 타입.
                 .getResultList();
@@ -78,9 +165,10 @@ public class MemberJpaRepository {
 
     public int bulkAgePlus(int age) { //모든 직원의 연봉 10퍼센트 인상과 같이 한번에 모든 객체를 대상으로 하는 쿼리를 벌크성 수정 쿼리라고 한다.
         int resultCount = em.createQuery(
-                        "update Member m set m.age = m.age + 1 where m.age >= :age")
+                        "update Member m set m.age = m.age + 1, m.lastModifiedDate = current_timestamp where m.age >= :age")
                 .setParameter("age", age)
                 .executeUpdate();
+        changeLog.recordBulk("Member", Set.of("age", "lastModifiedDate")); //벌크 연산은 엔티티 리스너를 타지 않으므로 직접 기록
         return resultCount;
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package study.datajpa.repository;
 
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
@@ -12,11 +13,11 @@ import study.datajpa.entity.Member;
 
 import javax.persistence.LockModeType;
 import javax.persistence.QueryHint;
-import java.util.Collection;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
-public interface MemberRepository extends JpaRepository<Member, Long>, MemberRepositoryCustom {
+public interface MemberRepository extends JpaRepository<Member, Long>, MemberRepositoryCustom, JpaSpecificationExecutor<Member> { //MemberSpec으로 동적 검색
 
     List<Member> findByUsernameAndAgeGreaterThan(String username, int age);
 
@@ -27,10 +28,11 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
 
     //아래의 @Query 부분을 지워도 잘 작동한다. 왜? -> 관례적으로 메서드 이름인 findByUsername을 Member에서 @NamedQuery를 먼저 찾기 때문이다!
     //없다면 이름으로 위의 메서드처럼 이름으로 만든 쿼리를 찾는다.
-    @Query(name = "Member.findByUsername") //기본적으로 Member에 @NamedQuery를 정의해줘야 한다.
+    //@Query(name = "Member.findByUsername") //기본적으로 Member에 @NamedQuery를 정의해줘야 한다.
     //MemberJpaRepository와 다르게 구현체를 구현하지 않아도 @NamedQuery를 쉽게 호출할 수 있음을 보여주는 예시이다.
-    List<Member> findByUsername(@Param("username") String username);
+    //List<Member> findByUsername(@Param("username") String username);
     //@Param 같은건 jpql을 직접 작성 했을 때 (Member.java에 보면 :username 이런거 있을 때) 붙여준다.
+    //-> findByUsername은 MemberUsernameIndex를 거치도록 MemberRepositoryCustom으로 옮겼다. (인덱스가 없으면 위 @NamedQuery로 조회)
 
     /**
      * @NamedQuery의 장점!
@@ -45,21 +47,33 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     @Query("select m from Member m where m.username= :username and m.age = :age")
     List<Member> findUser(@Param("username") String username, @Param("age") int age);
 
+    //쓰기 트랜잭션 안에서는 캐시를 쓰지 않는다. -> 아직 커밋 안 된 내 변경이 안보이는 문제 방지
+    @Cacheable(cacheNames = "usernameList", condition = QueryResultCacheInvalidator.CACHEABLE)
     @Query("select m.username from Member m") //username만 뽑는 방법
     List<String> findUsernameList();
 
+    @Cacheable(cacheNames = "memberDto", condition = QueryResultCacheInvalidator.CACHEABLE)
     @Query("select new study.datajpa.dto.MemberDto(m.id, m.username, t.name) from Member m join m.team t")
     List<MemberDto> findMemberDto();
 
-    @Query("select m from Member m where m.username in :names") //Collection 타입으로 in절 지원
-    List<Member> findByNames(@Param("names") Collection<String> names);
+    //@Query("select m from Member m where m.username in :names") //Collection 타입으로 in절 지원
+    //List<Member> findByNames(@Param("names") Collection<String> names); -> MemberRepositoryCustom (username 인덱스)
+
+    /** 접두사 검색 (자동완성)
+     *
+     * StartingWith -> where m.username like ? escape '\' (파라미터에 'prefix%'가 바인딩, %나 _는 알아서 escape 해준다)
+     * 앞부분이 고정된 like는 username 인덱스를 range scan 하므로 테이블 전체를 읽지 않는다. ('%prefix' 처럼 앞에 %가 붙으면 인덱스를 못탄다)
+     * Pageable로 상위 K건만, 프로젝션 타입으로 필요한 컬럼만 가져온다.
+     */
+    <T> List<T> findByUsernameStartingWith(String prefix, Pageable pageable, Class<T> type);
 
     /** 유연한 반환타입 지원
      * find 뒤에 붙는 List, Member, Optional은 의미 있는게 아님! 아무거나 적어도 상관 없다.
      */
     List<Member> findListByUsername(String name); //컬렉션 - 결과 없음: 빈 컬렉션 반환
-    Member findMemberByUsername(String name); //단건 - 결과 없음: null 반환, 결과가 2건 이상: javax.persistence.NonUniqueResultException 예외 발생
-    Optional<Member> findOptionalByUsername(String name); //단건 Optional
+    //Member findMemberByUsername(String name); //단건 - 결과 없음: null 반환, 결과가 2건 이상: javax.persistence.NonUniqueResultException 예외 발생
+    //Optional<Member> findOptionalByUsername(String name); //단건 Optional
+    //-> 두 메서드는 username 인덱스를 거치도록 MemberRepositoryCustom으로 옮겼다. (반환 규칙은 같다)
 
     /**
      * 참고: 단건으로 지정한 메서드를 호출하면 스프링 데이터 JPA는 내부에서 JPQL의
@@ -93,6 +107,13 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
 
     Slice<Member> findSliceByAge(int age, Pageable pageable); //count 쿼리 사용안함
 
+    /**
+     * 팀 조건이 붙은 페이징
+     * team.id는 FK 컬럼이라 join 없이 m.team_id = ? 로 조회되고, idx_member_team_age 인덱스를 타서
+     * 다른 팀의 row는 읽지 않는다. (count 쿼리도 동일한 조건 사용)
+     */
+    Page<Member> findPageByTeamIdAndAge(Long teamId, int age, Pageable pageable);
+
     //이렇게도 사용할 수 있다
 //    List<Member> findByAge(int age, Pageable pageable); //count 쿼리 사용안함
 //    List<Member> findByAge(int age, Sort sort);
@@ -114,9 +135,44 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
      */
     @Modifying//벌크성 수정, 삭제 쿼리는 @Modifying 어노테이션을 사용해야 한다.
     //영속성 컨텍스트가 초기화되지 않아서 생기는 문제는 em.clear()로 해결할 수도 있고 여기서 @Modifying(clearAutomatically = true)로 해결할 수도 있다.
-    @Query("update Member m set m.age = m.age + 1 where m.age >= :age")
+    //벌크 연산은 Auditing을 타지 않으므로 lastModifiedDate를 직접 갱신한다. (변경분 동기화, ETag가 이 값을 본다)
+    @Query("update Member m set m.age = m.age + 1, m.lastModifiedDate = current_timestamp where m.age >= :age")
     int bulkAgePlus(@Param("age") int age); //반환 타입이 int여야 한다.
 
+    /** 변경분 조회 (증분 동기화)
+     *
+     * 클라이언트가 마지막으로 받은 (lastModifiedDate, id)를 워터마크로 넘기면 그 이후에 수정된 회원만 가져온다.
+     * offset 페이징 대신 (last_modified_date, member_id) 인덱스를 seek 하므로 전체 테이블 크기가 아니라 변경 건수에 비례한다.
+     * 같은 시각에 수정된 회원이 여러 명이어도 id로 이어서 읽기 때문에 빠지거나 중복되지 않는다.
+     *
+     * until: lastModifiedDate는 커밋 시각이 아니라 flush 시각이다. 늦게 커밋된 트랜잭션의 row가 이미 지나간 워터마크보다
+     * 앞선 시각으로 나타날 수 있으므로, 최근 (지금 - lag) 이후에 수정된 row는 아직 내려주지 않는다. -> 커밋이 lag 안에 끝나면 빠지지 않는다.
+     */
+    @Query("select m from Member m" +
+            " where (m.lastModifiedDate > :since or (m.lastModifiedDate = :since and m.id > :lastId))" +
+            " and m.lastModifiedDate < :until" +
+            " order by m.lastModifiedDate asc, m.id asc")
+    List<Member> findChangedSince(@Param("since") LocalDateTime since, @Param("lastId") Long lastId,
+                                  @Param("until") LocalDateTime until, Pageable pageable);
+
+    /** 조건부 GET(ETag, Last-Modified)용 버전 조회 - 엔티티를 로딩하지 않는다.
+     *
+     * 회원 한 명: PK 조회로 lastModifiedDate 컬럼 하나만 읽는다.
+     * 목록은 쿼리 없이 변경 로그의 테이블 버전(EntityChangeLog.getLastOffset)을 쓴다. (MemberController.list 참고)
+     */
+    @Query("select m.lastModifiedDate from Member m where m.id = :id")
+    Optional<LocalDateTime> findLastModifiedDateById(@Param("id") Long id);
+
+    /**
+     * 팀 소속 회원 삭제 - deleteByTeamId 처럼 메서드 이름으로 만들면 회원을 전부 조회한 뒤 한 건씩 remove 한다.
+     * @Query로 delete 벌크 쿼리를 직접 지정하면 조회 없이 한번에 지운다.
+     * id 목록으로 지울 때는 JpaRepository가 제공하는 deleteAllByIdInBatch(ids)를 사용하면 된다.
+     * flushAutomatically: 실행 전에 영속성 컨텍스트 전체를 flush -> clearAutomatically로 초기화할 때 다른 엔티티의 변경이 버려지지 않는다.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Member m where m.team.id = :teamId")
+    int bulkDeleteByTeamId(@Param("teamId") Long teamId);
+
     @Query("select m from Member m left join fetch m.team")
     List<Member> findMemberFetchJoin();
 
@@ -153,6 +209,23 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     List<Member> findLockByUsername(String name);
 
+    /** 작업 큐 - 여러 워커가 동시에 서로 다른 회원 묶음을 가져간다.
+     *
+     * findLockByUsername처럼 그냥 PESSIMISTIC_WRITE를 걸면 다른 워커가 잠근 row에서 기다리므로 워커들이 한 줄로 선다.
+     * javax.persistence.lock.timeout 힌트 (밀리초)
+     *  -2 : SKIP LOCKED - 잠긴 row는 기다리지 않고 건너뛰고 다음 row를 가져온다. (select ... for update skip locked)
+     *   0 : NOWAIT - 잠긴 row가 있으면 바로 예외
+     *  >0 : 그 시간만큼만 기다리고 예외
+     * 반드시 트랜잭션 안에서 호출하고, 처리 후 커밋하면 잠금이 풀린다. 처리한 회원은 조건(age >= :age)에서 빠지도록 바꿔야 한다.
+     *
+     * 주의: SKIP LOCKED를 지원하지 않는 DB(H2 등)에서는 하이버네이트가 그냥 for update로 바꿔서 보내므로 기다리게 된다.
+     *      (PostgreSQL, MySQL 8, Oracle 등은 지원)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2")) //LockOptions.SKIP_LOCKED
+    @Query("select m from Member m where m.age >= :age order by m.id")
+    List<Member> claimByAgeGoe(@Param("age") int age, Pageable pageable);
+
 
     /** Projection
      *
@@ -160,6 +233,10 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
      */
     <T>List<T> findProjectionsByUsername(@Param("username") String username, Class<T> type); //어쩔 땐 username만 가져오고 싶고 어쩔 땐 나이만 가져오고 싶고 이런식으로 바꾸고 싶을 때 타입만 추가해서 넘기면 된다!
 
+    //id로 단건 조회 + 프로젝션 -> 엔티티 전체(감사 컬럼 포함)가 아니라 프로젝션에 필요한 컬럼만 select 한다.
+    //UsernameOnly 처럼 SpEL(@Value)을 쓰는 Open Projection은 결국 엔티티 전체를 가져오므로 Closed Projection이나 DTO(UsernameOnlyDto)를 넘겨야 한다.
+    <T> Optional<T> findProjectionById(Long id, Class<T> type);
+
 
     /** 스프링 데이터 JPA 기반 네이티브 쿼리
      *
@@ -178,8 +255,13 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     @Query(value = "select  * from member where username = ?", nativeQuery = true)
     Member findByNativeQuery(String username);
 
-    /** NativeQuery를 사용해서 DTO로 받는 방법 */
-    @Query(value = "SELECT m.member_id as id, m.username, t.name as teamName FROM member m left join team t",
+    /** NativeQuery를 사용해서 DTO로 받는 방법
+     *
+     * 주의: 네이티브 조인은 on 조건을 빠뜨리면 member x team 카티션 곱이 된다. (countQuery의 건수와도 달라진다)
+     * -> QueryAnalyzerTest가 이런 쿼리를 잡아낸다.
+     */
+    @Cacheable(cacheNames = "memberNativeProjection", condition = QueryResultCacheInvalidator.CACHEABLE)
+    @Query(value = "SELECT m.member_id as id, m.username, t.name as teamName FROM member m left join team t on m.team_id = t.team_id",
             countQuery = "SELECT count(*) from member",
             nativeQuery = true)
     Page<MemberProjection> findByNativeProjection(Pageable pageable);
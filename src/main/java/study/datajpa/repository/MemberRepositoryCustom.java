@@ -1,12 +1,37 @@
 package study.datajpa.repository;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import study.datajpa.dto.MemberSearchCondition;
 import study.datajpa.entity.Member;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 public interface MemberRepositoryCustom {
     List<Member> findMemberCustom();
 
+    /** username 조회 - MemberUsernameIndex를 켜면 인덱스로 id를 찾아 PK 조회, 없는 이름은 DB에 가지 않는다.
+     * 인덱스를 끄거나, 인덱스가 준비 중이거나, 쓰기 트랜잭션 안이면 DB에서 조회한다. (결과는 같다)
+     */
+    List<Member> findByUsername(String username);
+    List<Member> findByNames(Collection<String> names); //in 절
+    Member findMemberByUsername(String name); //단건 - 결과 없음: null 반환, 결과가 2건 이상: IncorrectResultSizeDataAccessException 예외 발생
+    Optional<Member> findOptionalByUsername(String name); //단건 Optional
+
+    //expand로 지정할 수 있는 연관관계
+    Set<String> EXPANDABLE = Set.of("team");
+
+    //expand에 지정한 연관관계만 fetch 조인 (엔티티 그래프를 요청 시점에 만든다.) - 비어 있으면 연관관계는 모두 지연 로딩
+    Optional<Member> findById(Long id, Set<String> expand);
+
+    Page<Member> findAll(Pageable pageable, Set<String> expand);
+
+    //동적 검색 (MemberSpec.search와 같은 결과) - 조건 모양별로 JPQL을 한번만 만든다.
+    Page<Member> search(MemberSearchCondition condition, Pageable pageable);
+
     /** 인터페이스의 메서드를 직접 구현하고 싶다면? - QueryDsl 사용할 때 많이 사용함
      *
      * 1. 새로운 인터페이스를 만든다.
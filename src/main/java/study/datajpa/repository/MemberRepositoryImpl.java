@@ -1,10 +1,34 @@
 package study.datajpa.repository;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.datajpa.dto.MemberSearchCondition;
 import study.datajpa.entity.Member;
 
+import javax.persistence.EntityGraph;
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
@@ -18,10 +42,235 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
      * 예를 들어서 위 예제의 MemberRepositoryImpl 대신에 MemberRepositoryCustomImpl 같이 구현해도 된다.
      */
     private final EntityManager em;
+    private final ObjectProvider<MemberUsernameIndex> usernameIndex;
+
+    private static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+
+    //expand 조합 -> 엔티티 그래프, 요청마다 새로 만들지 않도록 캐시 (크기 제한)
+    private final Cache<String, EntityGraph<Member>> fetchGraphs = Caffeine.newBuilder()
+            .maximumSize(32)
+            .build();
+
+    //검색 조건 모양 + 정렬 -> {조회 JPQL, count JPQL}, 요청마다 조립하지 않도록 캐시 (크기 제한)
+    private final Cache<String, String[]> searchQueries = Caffeine.newBuilder()
+            .maximumSize(64)
+            .build();
+
+    private static final int SEARCH_USERNAME = 1;
+    private static final int SEARCH_AGE_GOE = 1 << 1;
+    private static final int SEARCH_AGE_LOE = 1 << 2;
+    private static final int SEARCH_TEAM_NAME = 1 << 3;
 
     @Override
     public List<Member> findMemberCustom() {
         return em.createQuery("select m from Member m")
                 .getResultList();
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Member> findByUsername(String username) {
+        long[] ids = indexedIds(username);
+        if (ids == null) {
+            return em.createNamedQuery("Member.findByUsername", Member.class)
+                    .setParameter("username", username)
+                    .getResultList();
+        }
+        return findByIds(ids, Set.of(username));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Member> findByNames(Collection<String> names) {
+        List<long[]> found = new ArrayList<>(names.size());
+        for (String name : names) {
+            long[] ids = indexedIds(name);
+            if (ids == null) { //하나라도 인덱스로 못 찾으면 한 번의 in 쿼리로 조회
+                return em.createQuery("select m from Member m where m.username in :names", Member.class)
+                        .setParameter("names", names)
+                        .getResultList();
+            }
+            found.add(ids);
+        }
+        return findByIds(found.stream().flatMapToLong(Arrays::stream).distinct().toArray(), new HashSet<>(names));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Member findMemberByUsername(String name) {
+        List<Member> result = findByUsername(name);
+        if (result.size() > 1) {
+            throw new IncorrectResultSizeDataAccessException(1, result.size());
+        }
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Member> findOptionalByUsername(String name) {
+        return Optional.ofNullable(findMemberByUsername(name));
+    }
+
+    /**
+     * 인덱스는 커밋된 변경만 반영하므로, 쓰기 트랜잭션 안에서는 아직 커밋하지 않은 내 변경이 보이도록 DB에서 조회한다.
+     * (readOnly 트랜잭션이나 트랜잭션 밖에서만 인덱스를 쓴다.)
+     *
+     * @return 인덱스로 찾은 id 후보들, 인덱스를 쓸 수 없으면 null
+     */
+    private long[] indexedIds(String username) {
+        MemberUsernameIndex index = usernameIndex.getIfAvailable();
+        if (index == null || (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly())) {
+            return null;
+        }
+        return index.findIds(username);
+    }
+
+    //해시가 겹친 다른 이름, 인덱스 반영 전에 바뀐 이름을 걸러낸다.
+    private List<Member> findByIds(long[] ids, Set<String> usernames) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        List<Member> members;
+        if (ids.length == 1) {
+            Member member = em.find(Member.class, ids[0]); //영속성 컨텍스트에 있으면 쿼리도 안나간다.
+            members = member == null ? List.of() : List.of(member);
+        } else {
+            members = em.createQuery("select m from Member m where m.id in :ids", Member.class)
+                    .setParameter("ids", Arrays.stream(ids).boxed().collect(Collectors.toList()))
+                    .getResultList();
+        }
+        return members.stream()
+                .filter(member -> usernames.contains(member.getUsername()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 클라이언트가 expand=team 처럼 필요한 연관관계를 고르면 그 연관관계만 fetch 조인한다.
+     * @EntityGraph(attributePaths = ...)는 메서드마다 고정이라 렌더링하지 않는 연관관계까지 조인하거나(과다 조회),
+     * 반대로 빠뜨려서 지연 로딩(N+1)이 생긴다.
+     *
+     * fetchgraph 힌트: 그래프에 있는 연관관계는 fetch 조인, 없는 연관관계는 지연 로딩
+     */
+    @Override
+    public Optional<Member> findById(Long id, Set<String> expand) {
+        Map<String, Object> hints = expand.isEmpty() ? Map.of() : Map.of(FETCH_GRAPH, fetchGraph(expand));
+        return Optional.ofNullable(em.find(Member.class, id, hints));
+    }
+
+    @Override
+    public Page<Member> findAll(Pageable pageable, Set<String> expand) {
+        TypedQuery<Member> query = em.createQuery(
+                QueryUtils.applySorting("select m from Member m", pageable.getSort(), "m"), Member.class);
+        if (!expand.isEmpty()) {
+            query.setHint(FETCH_GRAPH, fetchGraph(expand));
+        }
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+
+        //count 쿼리에는 조인이 필요 없다.
+        return PageableExecutionUtils.getPage(query.getResultList(), pageable,
+                () -> em.createQuery("select count(m) from Member m", Long.class).getSingleResult());
+    }
+
+    /**
+     * 동적 검색 - MemberSpec.search와 같은 조건이지만 Criteria를 요청마다 조립하지 않는다.
+     * 어떤 조건이 있는지(조건 모양)와 정렬로 JPQL 문자열을 한번만 만들어 캐시하고, 값은 모두 바인드 파라미터로 넣는다.
+     * -> 같은 모양이면 같은 JPQL이므로 하이버네이트 쿼리 플랜 캐시에서 파싱된 플랜도 그대로 재사용한다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Member> search(MemberSearchCondition condition, Pageable pageable) {
+        int shape = searchShape(condition);
+        String[] jpql = searchQueries.get(shape + "|" + pageable.getSort(), key -> searchQueries(shape, pageable.getSort()));
+
+        TypedQuery<Member> query = em.createQuery(jpql[0], Member.class);
+        bindSearch(query, condition, shape);
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+
+        return PageableExecutionUtils.getPage(query.getResultList(), pageable, () -> {
+            TypedQuery<Long> count = em.createQuery(jpql[1], Long.class);
+            bindSearch(count, condition, shape);
+            return count.getSingleResult();
+        });
+    }
+
+    private static int searchShape(MemberSearchCondition condition) {
+        int shape = 0;
+        if (condition.getUsername() != null && !condition.getUsername().isEmpty()) {
+            shape |= SEARCH_USERNAME;
+        }
+        if (condition.getAgeGoe() != null) {
+            shape |= SEARCH_AGE_GOE;
+        }
+        if (condition.getAgeLoe() != null) {
+            shape |= SEARCH_AGE_LOE;
+        }
+        if (condition.getTeamName() != null && !condition.getTeamName().isEmpty()) {
+            shape |= SEARCH_TEAM_NAME;
+        }
+        return shape;
+    }
+
+    private static String[] searchQueries(int shape, Sort sort) {
+        StringBuilder from = new StringBuilder(" from Member m");
+        if ((shape & SEARCH_TEAM_NAME) != 0) {
+            from.append(" join m.team t"); //회원과 팀 조인
+        }
+        List<String> where = new ArrayList<>();
+        if ((shape & SEARCH_USERNAME) != 0) {
+            where.add("m.username like :username escape '" + MemberSpec.LIKE_ESCAPE + "'");
+        }
+        if ((shape & SEARCH_AGE_GOE) != 0) {
+            where.add("m.age >= :ageGoe");
+        }
+        if ((shape & SEARCH_AGE_LOE) != 0) {
+            where.add("m.age <= :ageLoe");
+        }
+        if ((shape & SEARCH_TEAM_NAME) != 0) {
+            where.add("t.name = :teamName");
+        }
+        if (!where.isEmpty()) {
+            from.append(" where ").append(String.join(" and ", where));
+        }
+        return new String[]{
+                QueryUtils.applySorting("select m" + from, sort, "m"),
+                "select count(m)" + from
+        };
+    }
+
+    private static void bindSearch(Query query, MemberSearchCondition condition, int shape) {
+        if ((shape & SEARCH_USERNAME) != 0) {
+            query.setParameter("username", MemberSpec.escapeLike(condition.getUsername()) + "%");
+        }
+        if ((shape & SEARCH_AGE_GOE) != 0) {
+            query.setParameter("ageGoe", condition.getAgeGoe());
+        }
+        if ((shape & SEARCH_AGE_LOE) != 0) {
+            query.setParameter("ageLoe", condition.getAgeLoe());
+        }
+        if ((shape & SEARCH_TEAM_NAME) != 0) {
+            query.setParameter("teamName", condition.getTeamName());
+        }
+    }
+
+    private EntityGraph<Member> fetchGraph(Set<String> expand) {
+        Set<String> sorted = new TreeSet<>(expand); //순서가 달라도 같은 그래프를 쓰도록 정렬해서 키로 사용
+        for (String attribute : sorted) {
+            if (!EXPANDABLE.contains(attribute)) {
+                throw new IllegalArgumentException("expand 할 수 없는 속성입니다: " + attribute);
+            }
+        }
+
+        return fetchGraphs.get(String.join(",", sorted), key -> {
+            EntityGraph<Member> graph = em.createEntityGraph(Member.class);
+            graph.addAttributeNodes(sorted.toArray(new String[0]));
+            return graph;
+        });
+    }
 }
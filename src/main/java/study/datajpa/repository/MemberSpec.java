@@ -0,0 +1,76 @@
+package study.datajpa.repository;
+
+import org.springframework.data.jpa.domain.Specification;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+
+public class MemberSpec {
+
+    /**
+     * 스프링 데이터 JPA Specifications (명세) - JPA Criteria를 조립해서 동적 쿼리를 만든다.
+     * 조건 조합마다 findByXxxAndYyy 메서드를 추가하지 않아도 된다.
+     *
+     * 값은 Criteria 리터럴로 들어가는데, hibernate.criteria.literal_handling_mode=bind 설정으로
+     * 항상 바인드 파라미터로 렌더링된다. -> 조건 모양(어떤 조건이 있는지)이 같으면 값이 달라도 JPQL이 같으므로
+     * 하이버네이트 쿼리 플랜 캐시에서 파싱된 플랜을 재사용한다. (값이 JPQL에 박히면 값마다 새로 파싱하고 캐시도 넘친다)
+     * 다만 Criteria 조립과 JPQL 렌더링은 호출마다 한다. -> 요청마다 호출되는 /members/search는 조건 모양별로 JPQL을 캐시하는
+     * MemberRepository.search를 쓰고, 이 명세는 다른 조건과 조합해야 할 때 쓴다.
+     */
+
+    public static Specification<Member> search(MemberSearchCondition condition) {
+        return Specification.where(usernameStartsWith(condition.getUsername()))
+                .and(ageGoe(condition.getAgeGoe()))
+                .and(ageLoe(condition.getAgeLoe()))
+                .and(teamName(condition.getTeamName()));
+    }
+
+    static final char LIKE_ESCAPE = '\\'; //MemberRepositoryImpl.search도 같은 escape를 쓴다.
+
+    //null을 반환하면 조건에서 빠진다.
+    //입력에 들어있는 %, _ 는 와일드카드가 아니라 글자로 찾는다. (StartingWith 쿼리 메서드와 같은 escape)
+    public static Specification<Member> usernameStartsWith(String username) {
+        if (username == null || username.isEmpty()) {
+            return null;
+        }
+        return (root, query, builder) -> builder.like(root.get("username"), escapeLike(username) + "%", LIKE_ESCAPE);
+    }
+
+    static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 4);
+        for (char c : value.toCharArray()) {
+            if (c == LIKE_ESCAPE || c == '%' || c == '_') {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    public static Specification<Member> ageGoe(Integer age) {
+        if (age == null) {
+            return null;
+        }
+        return (root, query, builder) -> builder.greaterThanOrEqualTo(root.get("age"), age);
+    }
+
+    public static Specification<Member> ageLoe(Integer age) {
+        if (age == null) {
+            return null;
+        }
+        return (root, query, builder) -> builder.lessThanOrEqualTo(root.get("age"), age);
+    }
+
+    public static Specification<Member> teamName(String teamName) {
+        if (teamName == null || teamName.isEmpty()) {
+            return null;
+        }
+        return (root, query, builder) -> {
+            Join<Member, Team> team = root.join("team", JoinType.INNER); //회원과 팀 조인
+            return builder.equal(team.get("name"), teamName);
+        };
+    }
+}
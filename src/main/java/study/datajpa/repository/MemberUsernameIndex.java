@@ -0,0 +1,236 @@
+package study.datajpa.repository;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.changelog.ChangeType;
+import study.datajpa.changelog.EntityChange;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+@Component
+@ConditionalOnProperty(name = "member.username-index.enabled", havingValue = "true")
+public class MemberUsernameIndex {
+
+    /**
+     * username -> 회원 id 메모리 인덱스
+     *
+     * findByUsername 류의 조회는 호출이 가장 많은데, 대부분 없는 이름을 찾거나 id 하나만 알면 되는 경우다.
+     * 인덱스에 없는 이름은 DB에 가지 않고 바로 빈 결과를 돌려주고(miss), 있는 이름은 id로 PK 조회해서 끝낸다.
+     * MemberRepositoryImpl의 findByUsername, findMemberByUsername, findOptionalByUsername, findByNames가 사용한다.
+     *
+     * 메모리: username 문자열 대신 64비트 해시를 키로 LongMultiMap(long[] 기반)에 넣는다. 회원당 수십 바이트
+     * 해시가 겹치면 다른 이름의 id가 섞여 나올 수 있으므로, 호출하는 쪽에서 조회한 회원의 username을 다시 확인한다.
+     *
+     * 시작 시점에 전체를 한번 읽어서 만들고, 이후에는 EntityChangeLog의 커밋된 변경(EntityChange)만 반영한다.
+     * - INSERT, UPDATE: 변경에 실린 username 값으로 갱신 (username이 안 바뀐 UPDATE는 건너뛴다)
+     * - BULK: username을 바꿀 수 있는 벌크 연산만 다시 만든다. (나이 +1 같은 벌크는 무시)
+     *   다시 만드는 동안은 DB 조회로 넘기고, 여러 번 요청돼도 한 번만 백그라운드에서 만든다. (커밋하는 스레드를 붙잡지 않는다)
+     */
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final TransactionTemplate readOnlyTx;
+    private final AsyncTaskExecutor taskExecutor;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private LongMultiMap idsByHash = new LongMultiMap(16); //username 해시 -> id (username은 유니크가 아님)
+    private LongMultiMap hashById = new LongMultiMap(16); //id -> username 해시, 수정, 삭제 때 이전 값을 찾기 위해
+    private List<EntityChange> pending; //다시 만드는 중에 들어온 변경, 다 만든 뒤 반영한다. (만드는 중이 아니면 null)
+    private volatile boolean ready; //다 만들어지기 전에는 miss를 믿을 수 없으므로 DB 조회로 넘긴다.
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong fallbackCount = new AtomicLong();
+    private final AtomicLong rebuildCount = new AtomicLong();
+
+    public MemberUsernameIndex(PlatformTransactionManager transactionManager,
+                               @Qualifier("applicationTaskExecutor") AsyncTaskExecutor taskExecutor) {
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.readOnlyTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW); //커밋 이후 콜백에서도 호출되므로 새 트랜잭션으로
+        this.taskExecutor = taskExecutor;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        //조회하는 동안 락을 잡지 않도록 새 테이블에 만든 뒤 바꿔 끼운다.
+        LongMultiMap newIdsByHash = new LongMultiMap(1024);
+        LongMultiMap newHashById = new LongMultiMap(1024);
+        try {
+            readOnlyTx.executeWithoutResult(status -> {
+                try (Stream<Object[]> rows = em.createQuery("select m.id, m.username from Member m", Object[].class)
+                        .getResultStream()) { //전체를 List로 올리지 않고 흘려보내면서 만든다.
+                    rows.forEach(row -> put(newIdsByHash, newHashById, (Long) row[0], (String) row[1]));
+                }
+            });
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                pending = null; //ready는 false로 남아서 계속 DB로 조회한다.
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            idsByHash = newIdsByHash;
+            hashById = newHashById;
+            pending.forEach(this::apply); //조회 트랜잭션이 못 본, 그 사이 커밋된 변경 (이미 반영된 값이어도 다시 넣으면 그대로다)
+            pending = null;
+            ready = !rebuildRequested.get(); //그 사이 벌크 변경이 또 있었으면 다음 rebuild가 끝날 때까지 DB로
+            rebuildCount.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onChange(EntityChange change) {
+        if (!change.getEntityName().equals("Member") || !change.mayHaveChanged("username")) {
+            return;
+        }
+        if (change.getType() == ChangeType.BULK
+                || (change.getType() != ChangeType.DELETE && !change.getValues().containsKey("username"))) {
+            requestRebuild(); //어떤 row의 username이 바뀌었는지 알 수 없다.
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(change);
+            } else {
+                apply(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return 해당 username의 회원 id 후보들 (해시가 겹친 다른 이름의 id가 섞일 수 있다.)
+     *         인덱스가 준비되지 않았으면 null (-> DB에서 조회해야 함)
+     */
+    public long[] findIds(String username) {
+        if (!ready) {
+            fallbackCount.incrementAndGet();
+            return null;
+        }
+        long[] ids;
+        lock.readLock().lock();
+        try {
+            ids = username == null ? new long[0] : idsByHash.get(hash(username)); //username = null 조건은 아무것도 찾지 못한다.
+        } finally {
+            lock.readLock().unlock();
+        }
+        (ids.length == 0 ? missCount : hitCount).incrementAndGet();
+        return ids;
+    }
+
+    private void requestRebuild() {
+        lock.writeLock().lock();
+        try {
+            ready = false; //바로 DB 조회로 넘긴다.
+            if (!rebuildRequested.compareAndSet(false, true)) {
+                return; //이미 예약되어 있으면 그 rebuild가 이 변경까지 읽는다.
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        taskExecutor.execute(() -> {
+            rebuildRequested.set(false);
+            rebuild();
+        });
+    }
+
+    private void apply(EntityChange change) {
+        if (change.getType() == ChangeType.DELETE) {
+            put(idsByHash, hashById, change.getEntityId(), null);
+        } else {
+            put(idsByHash, hashById, change.getEntityId(), (String) change.getValues().get("username"));
+        }
+    }
+
+    //username이 null이면 제거
+    private static void put(LongMultiMap idsByHash, LongMultiMap hashById, long id, String username) {
+        long previous = hashById.getFirst(id, 0);
+        long hash = username == null ? 0 : hash(username);
+        if (previous == hash) {
+            return;
+        }
+        if (previous != 0) {
+            idsByHash.remove(previous, id);
+            hashById.remove(id, previous);
+        }
+        if (hash != 0) {
+            idsByHash.put(hash, id);
+            hashById.put(id, hash);
+        }
+    }
+
+    //64비트 FNV-1a, 0은 LongMultiMap의 빈 칸 표시이므로 피한다.
+    private static long hash(String username) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < username.length(); i++) {
+            hash ^= username.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /** 모니터링용 지표 **/
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getFallbackCount() {
+        return fallbackCount.get();
+    }
+
+    public long getRebuildCount() {
+        return rebuildCount.get();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return hashById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
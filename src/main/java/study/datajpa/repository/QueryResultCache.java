@@ -0,0 +1,131 @@
+package study.datajpa.repository;
+
+import org.springframework.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class QueryResultCache implements Cache {
+
+    /**
+     * @Cacheable 조회 결과 캐시 (Caffeine 캐시를 감싼다.) - DataJpaApplication#cacheManager 에서 등록
+     *
+     * 1. 늦게 도착한 오래된 결과를 넣지 않는다.
+     *    트랜잭션 밖의 조회가 커밋 전 데이터를 읽는 동안 커밋 -> QueryResultCacheInvalidator가 clear() -> 그 다음에 오래된 결과를 put 하면
+     *    다음 커밋까지 오래된 결과가 캐시에 남는다.
+     *    clear() 마다 세대(generation)를 올리고, 캐시 miss 시점의 세대와 put 시점의 세대가 다르면 넣지 않는다. (다음 조회가 다시 읽는다)
+     *    @Cacheable은 같은 스레드에서 get(key) -> 메서드 호출 -> put(key) 순서로 부르므로 스레드마다 마지막 miss 하나만 기억한다.
+     *    메서드가 예외를 던지면 put이 오지 않지만 다음 get이 덮어쓰므로 요청 스레드에 쌓이지 않는다.
+     *    put(key)의 키가 마지막 miss와 다르면(miss 시점을 모르면) 넣지 않는다.
+     * 2. 캐시된 List는 모든 호출자가 같이 쓰므로 수정할 수 없는 복사본을 넣는다. (한 호출자가 바꾸면 다른 호출자 결과도 바뀐다)
+     */
+
+    private final Cache delegate;
+    private final AtomicLong generation = new AtomicLong();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock(); //세대 확인 + put 과 clear() 사이에 끼어들지 못하도록
+    private final ThreadLocal<Miss> lastMiss = new ThreadLocal<>(); //이 스레드가 마지막으로 miss를 본 키와 그때의 세대
+
+    public QueryResultCache(Cache delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper cached = delegate.get(key);
+        if (cached == null) {
+            lastMiss.set(new Miss(key, generation.get()));
+        }
+        return cached;
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper cached = get(key);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            lastMiss.remove();
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Miss miss = lastMiss.get();
+        lastMiss.remove();
+        lock.readLock().lock();
+        try {
+            if (miss != null && miss.key.equals(key) && miss.generation == generation.get()) {
+                delegate.put(key, unmodifiable(value));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        lock.writeLock().lock();
+        try {
+            generation.incrementAndGet(); //조회 중이던 결과는 이 키인지 모르므로 모두 넣지 않는다.
+            delegate.evict(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            generation.incrementAndGet();
+            delegate.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static class Miss {
+        private final Object key;
+        private final long generation;
+
+        private Miss(Object key, long generation) {
+            this.key = key;
+            this.generation = generation;
+        }
+    }
+
+    private static Object unmodifiable(Object value) {
+        if (value instanceof List) {
+            return Collections.unmodifiableList(new ArrayList<>((List<?>) value));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,63 @@
+package study.datajpa.repository;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import study.datajpa.changelog.EntityChange;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+public class QueryResultCacheInvalidator {
+
+    /**
+     * MemberRepository의 @Cacheable 조회 결과를 쓰기가 일어났을 때 정확히 필요한 것만 비운다.
+     *
+     * 캐시마다 어떤 테이블(엔티티)을 읽는지 적어두고, EntityChangeLog가 커밋 후에 발행하는 EntityChange를 받아서
+     * 바뀐 엔티티를 읽는 캐시만 비운다. @Modifying 벌크 쿼리도 BULK 변경으로 들어오므로 같이 처리된다.
+     * ex) Team만 바뀌면 usernameList는 그대로 두고 memberDto, memberNativeProjection만 비운다.
+     */
+
+    //쓰기 트랜잭션 밖(트랜잭션 없음 또는 readOnly)일 때만 캐시 사용
+    public static final String CACHEABLE = "!T(org.springframework.transaction.support.TransactionSynchronizationManager).isActualTransactionActive()"
+            + " or T(org.springframework.transaction.support.TransactionSynchronizationManager).isCurrentTransactionReadOnly()";
+
+    private static final Map<String, List<String>> CACHES_BY_ENTITY = Map.of(
+            "Member", Arrays.asList("memberDto", "usernameList", "memberNativeProjection"),
+            "Team", Arrays.asList("memberDto", "memberNativeProjection")
+    );
+
+    private final CacheManager cacheManager;
+
+    @EventListener
+    public void onChange(EntityChange change) {
+        for (String cacheName : CACHES_BY_ENTITY.getOrDefault(change.getEntityName(), Collections.emptyList())) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    }
+
+    /**
+     * 캐시별 적중률 등 통계 (hitRate(), hitCount(), missCount(), evictionCount() ...)
+     */
+    public Map<String, CacheStats> stats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        for (String cacheName : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null && cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache) { //QueryResultCache로 감싸져 있다.
+                stats.put(cacheName, ((com.github.benmanes.caffeine.cache.Cache<?, ?>) cache.getNativeCache()).stats());
+            }
+        }
+        return stats;
+    }
+}
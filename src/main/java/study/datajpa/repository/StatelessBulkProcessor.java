@@ -0,0 +1,193 @@
+package study.datajpa.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.springframework.data.auditing.AuditingHandler;
+import org.springframework.stereotype.Repository;
+import study.datajpa.changelog.ChangeType;
+import study.datajpa.changelog.EntityChangeLog;
+import study.datajpa.entity.Member;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@Repository
+public class StatelessBulkProcessor {
+
+    /**
+     * ETL 같은 일회성 대량 처리용 - 하이버네이트 StatelessSession 사용
+     *
+     * 리포지토리(EntityManager)로 처리하면 모든 row가 영속성 컨텍스트(1차 캐시)에 쌓이고, 스냅샷을 만들어 변경 감지를 하고,
+     * 엔티티 리스너(Auditing, 변경 로그...)까지 탄다. StatelessSession은 이것들이 전부 없다.
+     * -> 조회한 엔티티는 바로 준영속 상태, 변경은 update()/insert()로 직접 반영, lazy 연관관계는 초기화할 수 없다.
+     *
+     * chunkSize 만큼 id 순서대로(keyset) 읽고 -> 변환하고 -> 커밋하는 것을 반복하므로 메모리는 chunk 크기만큼만 사용한다.
+     * hibernate.jdbc.batch_size 설정에 따라 update/insert는 JDBC batch로 나간다.
+     *
+     * 주의: 엔티티 리스너를 타지 않으므로 AuditingEntityListener가 하던 감사 컬럼(createdDate, lastModifiedDate...) 채우기를
+     *      insert/update 직전에 AuditingHandler로 직접 한다. (빠뜨리면 ETag, 변경분 동기화가 이 변경을 못 본다)
+     *      변경 로그에는 처리가 끝난 뒤 BULK 로 한번 남긴다. (실패해도 커밋된 chunk가 있으면 남긴다)
+     */
+
+    private final SessionFactory sessionFactory;
+    private final EntityChangeLog changeLog;
+    private final AuditingHandler auditingHandler; //@EnableJpaAuditing이 등록하는 빈, AuditingEntityListener도 이걸 사용한다.
+
+    public StatelessBulkProcessor(EntityManagerFactory entityManagerFactory, EntityChangeLog changeLog, AuditingHandler auditingHandler) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.changeLog = changeLog;
+        this.auditingHandler = auditingHandler;
+    }
+
+    @FunctionalInterface
+    public interface MemberTransform {
+        boolean apply(Member member); //값을 바꿨으면 true -> update 대상
+    }
+
+    /**
+     * fromId(포함) ~ toId(미포함) 범위의 회원을 변환, 변경된 row 수 반환
+     */
+    public long transformMembers(long fromId, long toId, int chunkSize, MemberTransform transform) {
+        requirePositive(chunkSize, "chunkSize");
+        long updated = 0;
+        long lastId = fromId - 1;
+        boolean committed = false;
+
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            while (true) {
+                Transaction tx = session.beginTransaction();
+                List<Member> chunk;
+                try {
+                    chunk = session.createQuery(
+                                    "select m from Member m where m.id > :lastId and m.id < :toId order by m.id", Member.class)
+                            .setParameter("lastId", lastId)
+                            .setParameter("toId", toId)
+                            .setMaxResults(chunkSize)
+                            .getResultList();
+
+                    for (Member member : chunk) {
+                        if (transform.apply(member)) {
+                            auditingHandler.markModified(member); //lastModifiedDate, lastModifiedBy
+                            session.update(member);
+                            updated++;
+                        }
+                    }
+                    tx.commit(); //chunk 단위 커밋 -> 중간에 실패해도 앞의 chunk는 반영된 상태
+                } catch (RuntimeException e) {
+                    rollback(tx, e);
+                    throw e;
+                }
+                committed = true;
+
+                if (chunk.size() < chunkSize) {
+                    break;
+                }
+                lastId = chunk.get(chunk.size() - 1).getId();
+            }
+        } finally {
+            if (committed) { //뒤에서 실패해도 이미 커밋된 chunk는 캐시, 인덱스 등이 알아야 한다.
+                changeLog.record("Member", null, ChangeType.BULK);
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * 전체 회원을 member_id 구간으로 partitions 개로 나눠 병렬로 변환
+     * 구간마다 별도의 StatelessSession(커넥션)을 사용한다. -> partitions는 커넥션 풀 크기보다 작게
+     */
+    public long transformMembersInParallel(int partitions, int chunkSize, MemberTransform transform) throws Exception {
+        requirePositive(partitions, "partitions");
+        requirePositive(chunkSize, "chunkSize");
+        Object[] range;
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            range = session.createQuery("select min(m.id), max(m.id) from Member m", Object[].class).getSingleResult();
+        }
+        if (range[0] == null) {
+            return 0;
+        }
+
+        long minId = (Long) range[0];
+        long maxId = (Long) range[1];
+        long step = Math.max(1, (maxId - minId + 1 + partitions - 1) / partitions);
+
+        ExecutorService executor = Executors.newFixedThreadPool(partitions);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (long from = minId; from <= maxId; from += step) {
+                long start = from;
+                long end = Math.min(from + step, maxId + 1);
+                results.add(executor.submit(() -> transformMembers(start, end, chunkSize, transform)));
+            }
+
+            long updated = 0;
+            for (Future<Long> result : results) {
+                updated += result.get();
+            }
+            return updated;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Member, Team 등 엔티티를 chunkSize 단위로 커밋하면서 insert (영속성 컨텍스트에 쌓이지 않는다)
+     */
+    public <T> long insertAll(Iterator<T> rows, int chunkSize) {
+        requirePositive(chunkSize, "chunkSize");
+        long inserted = 0;
+        String entityName = null;
+        boolean committed = false;
+
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            Transaction tx = session.beginTransaction();
+            try {
+                while (rows.hasNext()) {
+                    T row = rows.next();
+                    entityName = row.getClass().getSimpleName();
+                    auditingHandler.markCreated(row); //createdDate, lastModifiedDate... (감사 대상이 아닌 엔티티는 그대로)
+                    session.insert(row);
+
+                    if (++inserted % chunkSize == 0) {
+                        tx.commit();
+                        committed = true;
+                        tx = session.beginTransaction();
+                    }
+                }
+                tx.commit();
+                committed = true;
+            } catch (RuntimeException e) {
+                rollback(tx, e);
+                throw e;
+            }
+        } finally {
+            if (committed && entityName != null) {
+                changeLog.record(entityName, null, ChangeType.BULK);
+            }
+        }
+        return inserted;
+    }
+
+    //session.close()에 맡기지 않고 열린 트랜잭션을 바로 롤백한다. 롤백 실패는 원래 예외에 붙인다.
+    private static void rollback(Transaction tx, RuntimeException cause) {
+        try {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+        } catch (RuntimeException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private static void requirePositive(int value, String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + "는 1 이상이어야 합니다: " + value);
+        }
+    }
+}
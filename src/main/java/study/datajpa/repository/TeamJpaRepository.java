@@ -1,12 +1,16 @@
 package study.datajpa.repository;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import study.datajpa.changelog.ChangeType;
+import study.datajpa.changelog.EntityChangeLog;
 import study.datajpa.entity.Team;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public class TeamJpaRepository {
@@ -14,6 +18,9 @@ public class TeamJpaRepository {
     @PersistenceContext
     private EntityManager em;
 
+    @Autowired
+    private EntityChangeLog changeLog;
+
     public Team save(Team team) {
         em.persist(team);
         return team;
@@ -23,6 +30,32 @@ public class TeamJpaRepository {
         em.remove(team);
     }
 
+    /**
+     * 팀 삭제 - 소속 회원을 조회하지 않고 벌크 update로 FK(member.team_id)를 먼저 끊은 뒤 팀을 지운다.
+     * 회원까지 지우려면 MemberJpaRepository.deleteByTeamInBatches()를 먼저 호출하면 된다.
+     *
+     * 벌크 JPQL 전 자동 flush는 쿼리와 테이블이 겹치는 엔티티만 flush 하므로, 마지막 em.clear()에
+     * 다른 엔티티(Item 등)의 변경이 버려지지 않도록 먼저 직접 flush 한다.
+     */
+    public int deleteByIdDetachingMembers(Long teamId) {
+        em.flush();
+
+        em.createQuery("update Member m set m.team = null, m.lastModifiedDate = current_timestamp where m.team.id = :teamId")
+                .setParameter("teamId", teamId)
+                .executeUpdate();
+        changeLog.recordBulk("Member", Set.of("team", "lastModifiedDate"));
+
+        int deleted = em.createQuery("delete from Team t where t.id = :teamId")
+                .setParameter("teamId", teamId)
+                .executeUpdate();
+        if (deleted > 0) {
+            changeLog.record("Team", teamId, ChangeType.DELETE);
+        }
+
+        em.clear(); //영속성 컨텍스트에 남아있는 회원.team, 팀 엔티티가 DB와 달라졌으므로 초기화
+        return deleted;
+    }
+
     public List<Team> findAll() {
         return em.createQuery("select t from Team t", Team.class)
                 .getResultList();
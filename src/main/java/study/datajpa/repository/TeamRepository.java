@@ -1,8 +1,22 @@
 package study.datajpa.repository;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.dto.TeamDto;
+import study.datajpa.dto.TeamMemberDto;
+import study.datajpa.dto.TeamStatsDto;
 import study.datajpa.entity.Team;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 
 /**
  * @Repository 어노테이션 생략 가능!
@@ -12,4 +26,69 @@ import study.datajpa.entity.Team;
  * JPA 예외를 스프링 예외로 변환하는 과정도 자동으로 처리
  */
 public interface TeamRepository extends JpaRepository<Team, Long> { //첫 번째 인자는 타입, 두 번째 인자는 PK
+
+    /** 팀별 통계
+     *
+     * team.getMembers()로 컬렉션을 하나씩 로딩해서 세면 팀 수만큼 쿼리가 나가고 회원 엔티티를 전부 올리게 된다.
+     * group by로 DB에서 집계해서 팀당 한 row만 DTO로 받는다.
+     * 회원이 없는 팀도 나오도록 left join을 사용한다.
+     */
+    @Query("select new study.datajpa.dto.TeamStatsDto(t.id, t.name, count(m), avg(m.age))" +
+            " from Team t left join t.members m" +
+            " group by t.id, t.name")
+    List<TeamStatsDto> findTeamStats();
+
+    //팀 id 구간별로 나눠서 집계 -> 테이블이 아주 크면 구간을 나눠 여러 스레드에서 호출하고 결과를 합치면 된다. (TeamStatsService)
+    @Query("select new study.datajpa.dto.TeamStatsDto(t.id, t.name, count(m), avg(m.age))" +
+            " from Team t left join t.members m" +
+            " where t.id between :fromId and :toId" +
+            " group by t.id, t.name")
+    List<TeamStatsDto> findTeamStatsByIdBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    //구간을 나누기 위한 id 범위 (PK 인덱스의 양 끝만 읽는다), 팀이 없으면 null
+    @Query("select min(t.id) from Team t")
+    Long findMinId();
+
+    @Query("select max(t.id) from Team t")
+    Long findMaxId();
+
+    /** 팀 + 소속 회원 목록 (계층형 DTO)
+     *
+     * team.getMembers()를 팀마다 로딩하면 N+1, 컬렉션 fetch 조인을 하면 팀 row가 회원 수만큼 중복되고 페이징도 안된다.
+     * -> 팀 페이지를 DTO로 한번, 그 팀들의 회원을 평평한 DTO row로 한번 조회해서 메모리에서 팀별로 묶는다.
+     * 팀 수와 상관없이 쿼리 2번(+ 페이지 count), 엔티티는 하나도 만들지 않는다. (영속성 컨텍스트, 스냅샷 비용 없음)
+     */
+    @Transactional(readOnly = true) //두 쿼리가 같은 트랜잭션(같은 시점의 데이터)에서 실행되도록
+    default Page<TeamDto> findTeamsWithMembers(Pageable pageable) {
+        Page<TeamDto> teams = findTeamDtos(pageable);
+        if (teams.isEmpty()) {
+            return teams;
+        }
+
+        Map<Long, TeamDto> teamById = new HashMap<>((int) (teams.getNumberOfElements() / 0.75f) + 1); //rehash 없도록
+        for (TeamDto team : teams) {
+            teamById.put(team.getId(), team);
+        }
+
+        //회원 row는 팀 id 순으로 정렬되어 있으므로 같은 팀끼리 붙어있다. -> 구간 크기만큼 딱 맞게 리스트를 만든다.
+        List<TeamMemberDto> rows = findTeamMemberDtos(teamById.keySet());
+        int start = 0;
+        for (int i = 1; i <= rows.size(); i++) {
+            if (i == rows.size() || !rows.get(i).getTeamId().equals(rows.get(start).getTeamId())) {
+                teamById.get(rows.get(start).getTeamId()).setMembers(new ArrayList<>(rows.subList(start, i)));
+                start = i;
+            }
+        }
+        return teams;
+    }
+
+    @Query(value = "select new study.datajpa.dto.TeamDto(t.id, t.name) from Team t",
+            countQuery = "select count(t) from Team t")
+    Page<TeamDto> findTeamDtos(Pageable pageable);
+
+    //m.team.id는 member.team_id 컬럼이라 team 조인이 필요 없다.
+    @Query("select new study.datajpa.dto.TeamMemberDto(m.team.id, m.id, m.username, m.age) from Member m" +
+            " where m.team.id in :teamIds" +
+            " order by m.team.id, m.id")
+    List<TeamMemberDto> findTeamMemberDtos(@Param("teamIds") Collection<Long> teamIds);
 }
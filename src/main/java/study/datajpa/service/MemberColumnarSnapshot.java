@@ -0,0 +1,383 @@
+package study.datajpa.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.changelog.ChangeType;
+import study.datajpa.changelog.EntityChange;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "member.snapshot.enabled", havingValue = "true")
+public class MemberColumnarSnapshot {
+
+    /**
+     * 통계용 회원 컬럼 스냅샷 (읽기 전용)
+     *
+     * 나이 분포, age >= ? 건수, 팀별 인원 같은 통계 조회를 OLTP 테이블에 보내지 않고 메모리에서 계산한다.
+     * 회원 한 명을 객체로 들고 있지 않고 컬럼별로 primitive 배열처럼 이어서 저장한다. (id, age, team_id, username 코드)
+     * 저장 공간은 direct ByteBuffer(힙 밖)라서 회원 수가 많아도 GC 대상이 아니다.
+     * username은 중복이 많으므로 사전(dictionary)에 한번만 넣고 컬럼에는 int 코드만 저장한다. (사전은 힙에 있다)
+     *
+     * 집계는 분기 없는 단순 루프로 전체 컬럼을 훑는다. -> JIT가 루프를 펼치고 벡터화하기 좋다.
+     *
+     * 갱신: 시작할 때 전체를 한번 읽고, 이후에는 커밋된 변경(EntityChange)의 회원 id만 모아뒀다가
+     *      refresh-interval-ms 마다 그 회원들만 다시 읽어서 반영한다. 벌크 연산이 있으면 다시 만든다.
+     * 따라서 최대 refresh-interval-ms 만큼 DB보다 늦다. (JdbcTemplate로 직접 바꾼 값은 벌크 연산처럼 다음 rebuild에서 반영)
+     */
+
+    private static final int DELETED = Integer.MIN_VALUE; //삭제된 회원의 age 값 -> 범위 조건에 자연스럽게 걸리지 않는다.
+    private static final long NO_TEAM = 0;
+    private static final int REFRESH_CHUNK = 1000;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final TransactionTemplate readOnlyTx;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Columns columns = new Columns(16);
+
+    private final Set<Long> dirtyIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "member-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long refreshIntervalMs;
+
+    public MemberColumnarSnapshot(PlatformTransactionManager transactionManager,
+                                  @Value("${member.snapshot.refresh-interval-ms:1000}") long refreshIntervalMs) {
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.refreshIntervalMs = refreshIntervalMs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuild();
+        scheduler.scheduleWithFixedDelay(this::scheduledRefresh, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    @EventListener
+    public void onChange(EntityChange change) {
+        if (!change.getEntityName().equals("Member")) {
+            return;
+        }
+        if (change.getType() == ChangeType.BULK) {
+            rebuildRequested.set(true);
+        } else {
+            dirtyIds.add(change.getEntityId());
+        }
+    }
+
+    /**
+     * 전체를 새 버퍼에 만든 뒤 한번에 바꿔 끼운다. (만드는 동안에도 이전 스냅샷으로 조회 가능)
+     */
+    public synchronized void rebuild() {
+        rebuildRequested.set(false);
+        dirtyIds.clear(); //지금부터 읽는 값에 이미 반영된다.
+
+        Columns rebuilt = new Columns(Math.max(16, columns.size));
+        readOnlyTx.executeWithoutResult(status -> {
+            try (Stream<Object[]> rows = em.createQuery(
+                    "select m.id, m.age, t.id, m.username from Member m left join m.team t order by m.id", Object[].class)
+                    .getResultStream()) {
+                rows.forEach(row -> rebuilt.append((Long) row[0], (Integer) row[1], (Long) row[2], (String) row[3]));
+            }
+        });
+
+        lock.writeLock().lock();
+        try {
+            columns = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 변경된 회원만 다시 읽어서 반영
+     */
+    public synchronized void refresh() { //스케줄러와 직접 호출이 겹치지 않도록
+        if (rebuildRequested.get()) {
+            rebuild();
+            return;
+        }
+        if (dirtyIds.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = new ArrayList<>(dirtyIds);
+        dirtyIds.removeAll(ids); //읽는 동안 들어온 변경은 다음 refresh에서
+
+        for (int from = 0; from < ids.size(); from += REFRESH_CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(from + REFRESH_CHUNK, ids.size()));
+            List<Object[]> rows;
+            try {
+                rows = readOnlyTx.execute(status -> em.createQuery(
+                        "select m.id, m.age, t.id, m.username from Member m left join m.team t where m.id in :ids", Object[].class)
+                        .setParameter("ids", chunk)
+                        .getResultList());
+            } catch (RuntimeException e) {
+                dirtyIds.addAll(ids.subList(from, ids.size())); //반영하지 못한 변경은 다음 refresh에서 재시도
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                Set<Long> deleted = new HashSet<>(chunk);
+                for (Object[] row : rows) {
+                    deleted.remove((Long) row[0]);
+                    if (!columns.upsert((Long) row[0], (Integer) row[1], (Long) row[2], (String) row[3])) {
+                        rebuildRequested.set(true); //id 순서가 어긋난 신규 회원 -> 정렬을 유지하려면 다시 만든다.
+                    }
+                }
+                deleted.forEach(columns::delete);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        if (rebuildRequested.get()) {
+            rebuild();
+        }
+    }
+
+    private void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (RuntimeException e) { //예외가 밖으로 나가면 이후 주기 실행이 취소된다.
+            log.warn("member snapshot refresh failed, will retry", e);
+        }
+    }
+
+    /** 조회 - DB에 가지 않는다. **/
+
+    //bulkAgePlus의 대상 건수 (age >= :age)
+    public long countByAgeGoe(int age) {
+        return countByAgeBetween(age, Integer.MAX_VALUE);
+    }
+
+    public long countByAgeBetween(int from, int to) {
+        lock.readLock().lock();
+        try {
+            IntBuffer ages = columns.ages;
+            int size = columns.size;
+            long count = 0;
+            for (int i = 0; i < size; i++) {
+                int age = ages.get(i);
+                count += (age >= from & age <= to) ? 1 : 0; //&: 분기 없이
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //나이 구간별 인원 (구간 시작 나이 -> 인원)
+    public SortedMap<Integer, Long> ageHistogram(int bucketWidth) {
+        lock.readLock().lock();
+        try {
+            IntBuffer ages = columns.ages;
+            int size = columns.size;
+            Map<Integer, long[]> buckets = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                int age = ages.get(i);
+                if (age != DELETED) {
+                    buckets.computeIfAbsent(Math.floorDiv(age, bucketWidth) * bucketWidth, k -> new long[1])[0]++;
+                }
+            }
+            SortedMap<Integer, Long> histogram = new TreeMap<>();
+            buckets.forEach((bucket, count) -> histogram.put(bucket, count[0]));
+            return histogram;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //팀 id -> 인원 (팀이 없는 회원은 0)
+    public Map<Long, Long> countByTeam() {
+        lock.readLock().lock();
+        try {
+            LongBuffer teamIds = columns.teamIds;
+            IntBuffer ages = columns.ages;
+            int size = columns.size;
+            Map<Long, long[]> counts = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                if (ages.get(i) != DELETED) {
+                    counts.computeIfAbsent(teamIds.get(i), k -> new long[1])[0]++;
+                }
+            }
+            Map<Long, Long> result = new HashMap<>();
+            counts.forEach((teamId, count) -> result.put(teamId, count[0]));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long countByUsername(String username) {
+        lock.readLock().lock();
+        try {
+            Integer code = columns.codeByUsername.get(username);
+            if (code == null) {
+                return 0;
+            }
+            IntBuffer codes = columns.usernameCodes;
+            IntBuffer ages = columns.ages;
+            int size = columns.size;
+            long count = 0;
+            for (int i = 0; i < size; i++) {
+                count += (codes.get(i) == code & ages.get(i) != DELETED) ? 1 : 0;
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long size() {
+        return countByAgeBetween(Integer.MIN_VALUE + 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 컬럼 저장소 - 행 번호 i 가 id 오름차순으로 정렬된 회원 한 명
+     */
+    private static class Columns {
+        LongBuffer ids;
+        IntBuffer ages;
+        LongBuffer teamIds;
+        IntBuffer usernameCodes;
+        int size;
+        int capacity;
+
+        final List<String> usernames = new ArrayList<>(); //코드 -> username
+        final Map<String, Integer> codeByUsername = new HashMap<>();
+
+        Columns(int capacity) {
+            this.capacity = capacity;
+            this.ids = allocate(capacity, Long.BYTES).asLongBuffer();
+            this.ages = allocate(capacity, Integer.BYTES).asIntBuffer();
+            this.teamIds = allocate(capacity, Long.BYTES).asLongBuffer();
+            this.usernameCodes = allocate(capacity, Integer.BYTES).asIntBuffer();
+        }
+
+        void append(long id, int age, Long teamId, String username) {
+            if (size == capacity) {
+                grow();
+            }
+            ids.put(size, id);
+            set(size, age, teamId, username);
+            size++;
+        }
+
+        //false: 마지막 id보다 작은 신규 id라서 정렬된 위치에 넣을 수 없음
+        boolean upsert(long id, int age, Long teamId, String username) {
+            int row = find(id);
+            if (row >= 0) {
+                set(row, age, teamId, username);
+                return true;
+            }
+            if (size > 0 && ids.get(size - 1) > id) {
+                return false;
+            }
+            append(id, age, teamId, username);
+            return true;
+        }
+
+        void delete(long id) {
+            int row = find(id);
+            if (row >= 0) {
+                ages.put(row, DELETED);
+            }
+        }
+
+        private void set(int row, int age, Long teamId, String username) {
+            ages.put(row, age);
+            teamIds.put(row, teamId == null ? NO_TEAM : teamId);
+            usernameCodes.put(row, code(username));
+        }
+
+        private int code(String username) {
+            return codeByUsername.computeIfAbsent(String.valueOf(username), key -> { //null도 "null" 하나로
+                usernames.add(key);
+                return usernames.size() - 1;
+            });
+        }
+
+        private int find(long id) { //ids는 정렬되어 있으므로 이진 탐색
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long midId = ids.get(mid);
+                if (midId < id) {
+                    low = mid + 1;
+                } else if (midId > id) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        private void grow() {
+            int newCapacity = capacity * 2;
+            ids = copy(ids, allocate(newCapacity, Long.BYTES).asLongBuffer());
+            ages = copy(ages, allocate(newCapacity, Integer.BYTES).asIntBuffer());
+            teamIds = copy(teamIds, allocate(newCapacity, Long.BYTES).asLongBuffer());
+            usernameCodes = copy(usernameCodes, allocate(newCapacity, Integer.BYTES).asIntBuffer());
+            capacity = newCapacity;
+        }
+
+        private static ByteBuffer allocate(int capacity, int bytes) {
+            return ByteBuffer.allocateDirect(capacity * bytes).order(ByteOrder.nativeOrder()); //힙 밖 메모리
+        }
+
+        private static LongBuffer copy(LongBuffer from, LongBuffer to) {
+            to.put(from.duplicate().clear());
+            return to.clear();
+        }
+
+        private static IntBuffer copy(IntBuffer from, IntBuffer to) {
+            to.put(from.duplicate().clear());
+            return to.clear();
+        }
+    }
+}
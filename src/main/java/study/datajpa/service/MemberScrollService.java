@@ -0,0 +1,112 @@
+package study.datajpa.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import study.datajpa.changelog.ChangeType;
+import study.datajpa.changelog.EntityChange;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.repository.MemberRepository;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+@Service
+public class MemberScrollService {
+
+    /**
+     * 무한 스크롤 (Slice 기반, count 쿼리 없음)
+     *
+     * 클라이언트가 현재 페이지를 그리는 동안 다음 Slice를 미리 백그라운드에서 조회해 둔다.
+     * 순서대로 스크롤하면 다음 요청은 DB를 기다리지 않고 미리 받아둔 결과를 바로 꺼낸다.
+     *
+     * 미리 받아둔 결과는 최대 max-size 개, expire-seconds 동안만 보관하고 한번 꺼내면 지운다.
+     * 스크롤 커서(newCursor())마다 따로 보관한다. -> 같은 페이지를 보는 다른 클라이언트가 남의 결과를 꺼내가지 않는다.
+     *
+     * 회원이 바뀌면(커밋 후 EntityChange) 영향을 받는 결과만 버린다.
+     * - 바뀐 회원이 들어있는 Slice (수정, 삭제)
+     * - 바뀐 회원의 나이와 같은 나이의 Slice (새로 들어오거나 정렬 순서가 바뀜)
+     * - 아직 조회 중인 결과, 벌크 변경 -> 무엇이 바뀌었는지 모르므로 버린다.
+     */
+
+    private final MemberRepository memberRepository;
+    private final AsyncTaskExecutor taskExecutor;
+    private final Cache<List<Object>, CompletableFuture<Slice<MemberDto>>> prefetched;
+
+    public MemberScrollService(MemberRepository memberRepository,
+                               @Qualifier("applicationTaskExecutor") AsyncTaskExecutor taskExecutor, //스프링 부트가 등록해주는 기본 스레드 풀
+                               @Value("${member.scroll.prefetch.max-size:1000}") long maxSize,
+                               @Value("${member.scroll.prefetch.expire-seconds:30}") long expireSeconds) {
+        this.memberRepository = memberRepository;
+        this.taskExecutor = taskExecutor;
+        this.prefetched = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(expireSeconds))
+                .build();
+    }
+
+    //스크롤을 처음 시작할 때 발급, 이후 요청에 같이 넘긴다.
+    public String newCursor() {
+        return UUID.randomUUID().toString();
+    }
+
+    public Slice<MemberDto> scrollByAge(String cursor, int age, Pageable pageable) {
+        CompletableFuture<Slice<MemberDto>> ready = prefetched.asMap().remove(key(cursor, age, pageable));
+        Slice<MemberDto> slice = ready == null ? null : ready.exceptionally(e -> null).join(); //미리 조회가 실패했으면 다시 조회
+        if (slice == null) {
+            slice = load(age, pageable);
+        }
+
+        if (slice.hasNext()) {
+            Pageable next = slice.nextPageable();
+            prefetched.asMap().computeIfAbsent(key(cursor, age, next),
+                    k -> CompletableFuture.supplyAsync(() -> load(age, next), taskExecutor));
+        }
+        return slice;
+    }
+
+    private Slice<MemberDto> load(int age, Pageable pageable) {
+        return memberRepository.findSliceByAge(age, pageable).map(MemberDto::new); //엔티티는 밖으로 내보내지 않고 DTO로
+    }
+
+    private List<Object> key(String cursor, int age, Pageable pageable) {
+        return Arrays.asList(cursor, age, pageable); //PageRequest는 page, size, sort로 equals/hashCode를 구현하고 있다.
+    }
+
+    @EventListener
+    public void onChange(EntityChange change) {
+        if (change.getEntityName().equals("Member")) {
+            prefetched.asMap().entrySet().removeIf(entry -> affectedBy(change, (Integer) entry.getKey().get(1), entry.getValue()));
+        }
+    }
+
+    private static boolean affectedBy(EntityChange change, int age, CompletableFuture<Slice<MemberDto>> slice) {
+        if (change.getType() == ChangeType.BULK || !slice.isDone() || slice.isCompletedExceptionally()) {
+            return true;
+        }
+        Object changedAge = change.getValues().get("age"); //변경 후 나이
+        if (Integer.valueOf(age).equals(changedAge) || (change.getType() == ChangeType.INSERT && changedAge == null)) {
+            return true;
+        }
+        Long id = change.getEntityId();
+        return slice.join().getContent().stream().anyMatch(member -> member.getId().equals(id));
+    }
+
+    public long prefetchedCount() {
+        return prefetched.estimatedSize();
+    }
+
+    //미리 조회가 count 건 이상 끝났는지 (테스트용)
+    boolean prefetchCompleted(long count) {
+        return prefetched.asMap().values().stream().filter(CompletableFuture::isDone).count() >= count;
+    }
+}
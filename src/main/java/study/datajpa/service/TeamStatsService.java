@@ -0,0 +1,63 @@
+package study.datajpa.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import study.datajpa.dto.TeamStatsDto;
+import study.datajpa.repository.TeamRepository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@Service
+public class TeamStatsService {
+
+    /**
+     * 팀별 통계를 팀 id 구간으로 나눠서 병렬로 집계하고 합친다.
+     *
+     * group by 키(팀 id)로 구간을 나누므로 한 팀의 집계는 항상 한 구간에서만 나온다.
+     * -> 구간 결과를 이어붙이기만 하면 된다. (count, avg를 다시 합칠 필요가 없다)
+     * 구간마다 다른 스레드, 다른 트랜잭션에서 조회하므로 그 사이 커밋된 변경은 구간에 따라 보이거나 안 보일 수 있다.
+     * 팀이 적으면 findTeamStats() 한번이 더 빠르다. (쿼리, 스레드 전환 비용)
+     */
+
+    private final TeamRepository teamRepository;
+    private final AsyncTaskExecutor taskExecutor;
+
+    public TeamStatsService(TeamRepository teamRepository,
+                            @Qualifier("applicationTaskExecutor") AsyncTaskExecutor taskExecutor) { //스프링 부트가 등록해주는 기본 스레드 풀
+        this.teamRepository = teamRepository;
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * @param partitions 나눌 구간 수, 1보다 작으면 1개로 조회한다.
+     * @return 팀 id 순으로 정렬된 팀별 통계 (findTeamStats()와 같은 내용)
+     */
+    public List<TeamStatsDto> findTeamStatsInParallel(int partitions) {
+        Long minId = teamRepository.findMinId();
+        Long maxId = teamRepository.findMaxId();
+        if (minId == null || maxId == null) {
+            return new ArrayList<>();
+        }
+
+        long span = maxId - minId + 1;
+        int count = (int) Math.max(1, Math.min(partitions, span)); //1 ~ id 개수로 제한 (0이면 나눌 수 없고, id보다 많으면 빈 구간만 생긴다)
+        long step = (span + count - 1) / count;
+        List<CompletableFuture<List<TeamStatsDto>>> ranges = new ArrayList<>(count);
+        for (long from = minId; from <= maxId; from += step) {
+            long start = from;
+            long end = Math.min(from + step - 1, maxId); //between은 양 끝을 포함
+            ranges.add(CompletableFuture.supplyAsync(() -> teamRepository.findTeamStatsByIdBetween(start, end), taskExecutor));
+        }
+
+        List<TeamStatsDto> merged = new ArrayList<>();
+        for (CompletableFuture<List<TeamStatsDto>> range : ranges) {
+            merged.addAll(range.join());
+        }
+        merged.sort(Comparator.comparing(TeamStatsDto::getTeamId)); //group by는 순서를 보장하지 않는다.
+        return merged;
+    }
+}
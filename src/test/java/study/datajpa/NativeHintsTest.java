@@ -0,0 +1,168 @@
+package study.datajpa;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Query;
+import study.datajpa.controller.MemberController;
+import study.datajpa.controller.TeamController;
+import study.datajpa.entity.Item;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.ItemRepository;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.MemberRepositoryCustom;
+import study.datajpa.repository.TeamRepository;
+
+import javax.persistence.EntityListeners;
+import javax.persistence.NamedQuery;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class NativeHintsTest {
+
+    /**
+     * 네이티브 이미지는 리플렉션, 동적 프록시로 쓰는 클래스를 미리 알려줘야 한다. (META-INF/native-image)
+     * 빠뜨려도 JVM에서는 잘 돌고 네이티브 이미지에서만 런타임에 실패하므로, 코드에서 힌트가 필요한 타입을 찾아서 비교한다.
+     *
+     * - JPQL 생성자 표현식 (select new study.datajpa.dto.XxxDto(...)) -> reflect-config
+     * - 컨트롤러 요청/응답 DTO (Jackson, 데이터 바인딩) -> reflect-config (필드 타입까지)
+     * - 인터페이스 프로젝션 -> proxy-config, reflect-config
+     * - @EntityListeners -> reflect-config
+     */
+
+    private static final String HINTS = "/META-INF/native-image/study/data-jpa/";
+    private static final Pattern CONSTRUCTOR_EXPRESSION = Pattern.compile("\\bnew\\s+(study\\.datajpa\\.[\\w.$]+)\\s*\\(");
+
+    private static final List<Class<?>> REPOSITORIES = List.of(MemberRepository.class, MemberRepositoryCustom.class, TeamRepository.class, ItemRepository.class);
+    private static final List<Class<?>> CONTROLLERS = List.of(MemberController.class, TeamController.class);
+    private static final List<Class<?>> ENTITIES = List.of(Member.class, Team.class, Item.class);
+
+    @Test
+    public void reflectionHintsCoverQueriesAndDtos() throws IOException {
+        Set<String> registered = new HashSet<>();
+        readHints("reflect-config.json").forEach(node -> registered.add(node.get("name").asText()));
+
+        Set<String> required = new TreeSet<>();
+        for (Class<?> repository : REPOSITORIES) {
+            for (Method method : repository.getDeclaredMethods()) {
+                Query query = method.getAnnotation(Query.class);
+                if (query != null) {
+                    addConstructorExpressions(query.value(), required);
+                }
+                projectionsOf(method.getGenericReturnType(), required);
+            }
+        }
+        for (Class<?> entity : ENTITIES) {
+            for (NamedQuery namedQuery : entity.getAnnotationsByType(NamedQuery.class)) {
+                addConstructorExpressions(namedQuery.query(), required);
+            }
+            EntityListeners listeners = entity.getAnnotation(EntityListeners.class);
+            if (listeners != null) {
+                Arrays.stream(listeners.value())
+                        .filter(listener -> listener.getName().startsWith("study.datajpa."))
+                        .forEach(listener -> required.add(listener.getName()));
+            }
+        }
+        for (Class<?> controller : CONTROLLERS) {
+            for (Method method : controller.getDeclaredMethods()) {
+                dtosOf(method.getGenericReturnType(), required);
+                Arrays.stream(method.getGenericParameterTypes()).forEach(type -> dtosOf(type, required));
+            }
+        }
+
+        assertThat(registered).as("reflect-config.json에 없는 타입").containsAll(required);
+    }
+
+    @Test
+    public void proxyHintsCoverInterfaceProjections() throws IOException {
+        Set<String> registered = new HashSet<>();
+        readHints("proxy-config.json").forEach(node -> registered.add(node.get("interfaces").get(0).asText()));
+
+        Set<String> required = new TreeSet<>();
+        for (Class<?> repository : REPOSITORIES) {
+            for (Method method : repository.getDeclaredMethods()) {
+                projectionsOf(method.getGenericReturnType(), required);
+            }
+        }
+        required.removeIf(name -> !isInterface(name));
+
+        assertThat(registered).as("proxy-config.json에 없는 인터페이스 프로젝션").containsAll(required);
+    }
+
+    private static void addConstructorExpressions(String query, Set<String> required) {
+        Matcher matcher = CONSTRUCTOR_EXPRESSION.matcher(query);
+        while (matcher.find()) {
+            required.add(matcher.group(1));
+        }
+    }
+
+    //반환 타입 중 엔티티가 아닌 프로젝션 타입 (인터페이스 프로젝션, DTO)
+    private static void projectionsOf(Type type, Set<String> required) {
+        for (Class<?> candidate : classesOf(type)) {
+            if (candidate.getName().startsWith("study.datajpa.") && !ENTITIES.contains(candidate)) {
+                required.add(candidate.getName());
+                for (Class<?> nested : candidate.getDeclaredClasses()) { //중첩 프로젝션 (NestedClosedProjections.TeamInfo)
+                    required.add(nested.getName());
+                }
+            }
+        }
+    }
+
+    //dto 패키지 타입과 그 필드 타입 (TeamDto -> TeamMemberDto)
+    private static void dtosOf(Type type, Set<String> required) {
+        for (Class<?> candidate : classesOf(type)) {
+            if (candidate.getName().startsWith("study.datajpa.dto.") && required.add(candidate.getName())) {
+                for (Field field : candidate.getDeclaredFields()) {
+                    dtosOf(field.getGenericType(), required);
+                }
+            }
+        }
+    }
+
+    private static Set<Class<?>> classesOf(Type type) {
+        Set<Class<?>> classes = new HashSet<>();
+        if (type instanceof Class) {
+            classes.add((Class<?>) type);
+        } else if (type instanceof ParameterizedType) {
+            classes.addAll(classesOf(((ParameterizedType) type).getRawType()));
+            for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+                classes.addAll(classesOf(argument));
+            }
+        } else if (type instanceof WildcardType) {
+            for (Type bound : ((WildcardType) type).getUpperBounds()) {
+                classes.addAll(classesOf(bound));
+            }
+        }
+        return classes;
+    }
+
+    private static boolean isInterface(String name) {
+        try {
+            return Class.forName(name).isInterface();
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static JsonNode readHints(String file) throws IOException {
+        try (InputStream in = NativeHintsTest.class.getResourceAsStream(HINTS + file)) {
+            assertThat(in).as(file).isNotNull();
+            return new ObjectMapper().readTree(in);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package study.datajpa.changelog;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+public class EntityChangeLogTest {
+
+    /**
+     * 변경 로그는 커밋 이후에 쌓이기 때문에 테스트에 @Transactional 을 붙이지 않고 TransactionTemplate으로 직접 커밋한다.
+     */
+
+    @Autowired EntityChangeLog changeLog;
+    @Autowired MemberRepository memberRepository;
+    @Autowired TeamRepository teamRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    @Test
+    public void captureChanges() {
+        //given
+        String consumer = "captureChanges";
+        changeLog.commit(consumer, changeLog.getNextOffset() - 1); //지금까지 쌓인 로그는 건너뛴다.
+
+        //when
+        Member member = transactionTemplate.execute(status -> {
+            Team team = teamRepository.save(new Team("teamA"));
+            return memberRepository.save(new Member("member1", 10, team));
+        });
+        transactionTemplate.executeWithoutResult(status -> memberRepository.bulkAgePlus(10));
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.deleteById(member.getId());
+            teamRepository.deleteById(member.getTeam().getId());
+        });
+
+        //then
+        List<EntityChange> changes = changeLog.poll(consumer, 100);
+        assertThat(changes).extracting("entityName", "entityId", "type").containsExactly(
+                tuple("Team", member.getTeam().getId(), ChangeType.INSERT),
+                tuple("Member", member.getId(), ChangeType.INSERT),
+                tuple("Member", null, ChangeType.BULK), //벌크 연산도 기록된다.
+                tuple("Member", member.getId(), ChangeType.DELETE),
+                tuple("Team", member.getTeam().getId(), ChangeType.DELETE));
+
+        changeLog.commit(consumer, changes.get(changes.size() - 1).getOffset());
+        assertThat(changeLog.poll(consumer, 100)).isEmpty(); //커밋한 이후로는 새 변경만 읽는다.
+    }
+
+    @Test
+    public void batchDeleteIsCaptured() {
+        //given
+        Member member = transactionTemplate.execute(status -> memberRepository.save(new Member("member1", 10)));
+        long offset = changeLog.getNextOffset();
+
+        //when - JpaRepository 기본 벌크 delete는 @Modifying이 아니어도 기록된다.
+        transactionTemplate.executeWithoutResult(status -> memberRepository.deleteAllByIdInBatch(List.of(member.getId())));
+
+        //then
+        assertThat(changeLog.read(offset, 100)).extracting("entityName", "entityId", "type")
+                .containsExactly(tuple("Member", member.getId(), ChangeType.DELETE));
+        assertThat(changeLog.getLastOffset("Member")).isEqualTo(offset); //회원 테이블 버전
+    }
+
+    @Test
+    public void rollbackIsNotCaptured() {
+        //given
+        long offset = changeLog.getNextOffset();
+
+        //when
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.save(new Member("member1", 10));
+            memberRepository.flush();
+            status.setRollbackOnly();
+        });
+
+        //then
+        assertThat(changeLog.getNextOffset()).isEqualTo(offset);
+    }
+
+    @Test
+    public void readTruncatedOffset() {
+        //retention 3 -> 5건 기록하면 offset 0, 1은 잘려나간다.
+        EntityChangeLog smallLog = new EntityChangeLog(event -> { }, 3);
+        for (long id = 1; id <= 5; id++) {
+            smallLog.record("Member", id, ChangeType.INSERT); //트랜잭션 밖이면 바로 추가
+        }
+
+        assertThat(smallLog.getFirstOffset()).isEqualTo(2);
+        assertThat(smallLog.read(3, 10)).extracting("offset", "entityId")
+                .containsExactly(tuple(3L, 4L), tuple(4L, 5L));
+
+        //잘려나간 offset을 읽으면 빈틈을 알 수 있도록 예외 -> 가장 오래된 offset부터 다시 맞춘다.
+        assertThatThrownBy(() -> smallLog.read(1, 10))
+                .isInstanceOfSatisfying(ChangeLogTruncatedException.class,
+                        e -> assertThat(e.getEarliestOffset()).isEqualTo(2));
+    }
+}
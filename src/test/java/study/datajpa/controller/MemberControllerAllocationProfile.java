@@ -0,0 +1,169 @@
+package study.datajpa.controller;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.MockMvcPrint;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberRepository;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Tag("perf") //./gradlew perfTest 로만 실행된다.
+@SpringBootTest(properties = { //SQL 로그 출력 비용이 측정에 섞이지 않도록 끈다.
+        "logging.level.org.hibernate.SQL=info",
+        "decorator.datasource.p6spy.enable-logging=false"
+})
+@AutoConfigureMockMvc(print = MockMvcPrint.NONE) //실패 대비용 요청/응답 출력 버퍼링도 끈다.
+public class MemberControllerAllocationProfile {
+
+    /**
+     * MemberController 요청 한 건이 힙을 얼마나 할당하는지 측정
+     * (Pageable 바인딩 -> 조회/엔티티 생성 -> Jackson 직렬화 까지 전부 포함)
+     *
+     * MockMvc는 요청을 호출한 스레드에서 그대로 처리하므로 현재 스레드의 할당 바이트, CPU 시간 차이가 곧 요청 비용이다.
+     * (MockHttpServletRequest/Response 생성 비용도 조금 섞여 있다)
+     * 동시에 JFR로 할당 샘플을 기록해서 할당을 가장 많이 하는 위치(첫 번째 비 JDK 프레임 기준)를 뽑는다.
+     *
+     * 결과: build/reports/perf/allocation-report.txt, 엔드포인트별 .jfr 파일 (JDK Mission Control로 열어볼 수 있다)
+     * 기준 결과는 src/test/resources/perf/allocation-report.txt 에 커밋해두고 변경 전후를 비교한다.
+     */
+
+    private static final int SEED = Integer.getInteger("perf.seed", 1000);
+    private static final int WARMUP = Integer.getInteger("perf.warmup", 2000);
+    private static final int ITERATIONS = Integer.getInteger("perf.iterations", 5000);
+    private static final int TOP_SITES = 10;
+
+    @Autowired MockMvc mockMvc;
+    @Autowired MemberRepository memberRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Value("${spring.datasource.url}") String datasourceUrl; //측정한 DB를 리포트에 남긴다. (설정 기본값은 H2 TCP 서버)
+
+    List<Member> members = new ArrayList<>();
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> memberRepository.deleteAllInBatch(members));
+    }
+
+    @Test
+    public void profileRequestPath() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < SEED; i++) {
+                members.add(memberRepository.save(new Member("member" + i, i % 100)));
+            }
+        });
+        Long id = members.get(SEED / 2).getId();
+
+        Map<String, RequestBuilder> scenarios = new LinkedHashMap<>();
+        scenarios.put("GET /members?page=0&size=20", get("/members").param("page", "0").param("size", "20"));
+        scenarios.put("GET /member1/{id}", get("/member1/" + id));
+        scenarios.put("GET /member2/{id}", get("/member2/" + id));
+
+        Path reportDir = Paths.get(System.getProperty("perf.reportDir", "build/reports/perf"));
+        Files.createDirectories(reportDir);
+
+        StringBuilder report = new StringBuilder()
+                .append("# MemberController allocation profile\n")
+                .append("# datasource=").append(datasourceUrl).append('\n')
+                .append(String.format("# java=%s, seed=%d, warmup=%d, iterations=%d%n%n",
+                        System.getProperty("java.version"), SEED, WARMUP, ITERATIONS));
+
+        int index = 0;
+        for (Map.Entry<String, RequestBuilder> scenario : scenarios.entrySet()) {
+            Path jfr = reportDir.resolve("allocation-" + index++ + ".jfr");
+            report.append(profile(scenario.getKey(), scenario.getValue(), jfr)).append('\n');
+        }
+
+        Files.writeString(reportDir.resolve("allocation-report.txt"), report);
+        System.out.println(report);
+    }
+
+    private String profile(String name, RequestBuilder request, Path jfr) throws Exception {
+        for (int i = 0; i < WARMUP; i++) { //JIT 컴파일, 캐시 등이 자리잡을 때까지
+            mockMvc.perform(request).andExpect(status().isOk());
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.ObjectAllocationSample"); //JDK 16+
+            recording.enable("jdk.ObjectAllocationInNewTLAB"); //JDK 11~15
+            recording.enable("jdk.ObjectAllocationOutsideTLAB");
+            recording.start();
+
+            long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+            long cpuBefore = threads.getCurrentThreadCpuTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                mockMvc.perform(request);
+            }
+            long bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+            long cpu = threads.getCurrentThreadCpuTime() - cpuBefore;
+
+            recording.stop();
+            recording.dump(jfr);
+
+            return String.format("## %s%nbytes/request=%,d cpu-us/request=%.1f%ntop allocation sites (by sampled bytes):%n%s",
+                    name, bytes / ITERATIONS, cpu / 1000.0 / ITERATIONS, topAllocationSites(jfr, threadId));
+        }
+    }
+
+    private String topAllocationSites(Path jfr, long threadId) throws IOException {
+        Map<String, Long> bytesBySite = new HashMap<>();
+        long total = 0;
+        for (RecordedEvent event : RecordingFile.readAllEvents(jfr)) {
+            if (event.getThread() == null || event.getThread().getJavaThreadId() != threadId || event.getStackTrace() == null) {
+                continue;
+            }
+            long weight = event.hasField("weight") ? event.getLong("weight")
+                    : event.hasField("tlabSize") ? event.getLong("tlabSize")
+                    : event.getLong("allocationSize");
+            bytesBySite.merge(site(event.getStackTrace().getFrames()), weight, Long::sum);
+            total += weight;
+        }
+
+        StringBuilder sites = new StringBuilder();
+        long sampled = total;
+        bytesBySite.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(TOP_SITES)
+                .forEach(site -> sites.append(String.format("  %5.1f%%  %s%n", 100.0 * site.getValue() / sampled, site.getKey())));
+        return sites.toString();
+    }
+
+    //java.util.HashMap.resize 같은 JDK 내부보다 그걸 부른 라이브러리/애플리케이션 위치가 더 쓸모 있다.
+    private String site(List<RecordedFrame> frames) {
+        for (RecordedFrame frame : frames) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            }
+        }
+        RecordedFrame top = frames.get(0);
+        return top.getMethod().getType().getName() + "." + top.getMethod().getName();
+    }
+}
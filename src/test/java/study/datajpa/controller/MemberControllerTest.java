@@ -0,0 +1,225 @@
+package study.datajpa.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.StatelessBulkProcessor;
+import study.datajpa.repository.TeamRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class MemberControllerTest {
+
+    //조건부 GET은 커밋된 lastModifiedDate를 보므로 TransactionTemplate으로 커밋하고 직접 정리한다.
+
+    @Autowired MockMvc mockMvc;
+    @Autowired ObjectMapper objectMapper;
+    @Autowired MemberRepository memberRepository;
+    @Autowired TeamRepository teamRepository;
+    @Autowired StatelessBulkProcessor bulkProcessor;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    List<Long> memberIds = new ArrayList<>();
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> memberRepository.deleteAllByIdInBatch(memberIds));
+    }
+
+    @Test
+    public void member1NotModified() throws Exception {
+        Long id = save("etag1", 10);
+
+        String etag = mockMvc.perform(get("/member1/" + id))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotNull();
+
+        //수정 없음 -> 304
+        mockMvc.perform(get("/member1/" + id).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        //수정 -> 200, 새 ETag
+        transactionTemplate.executeWithoutResult(status -> memberRepository.findById(id).get().setUsername("etag2"));
+
+        String changed = mockMvc.perform(get("/member1/" + id).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(changed).isNotEqualTo(etag);
+    }
+
+    @Test
+    public void member1ChangedByStatelessTransform() throws Exception {
+        Long id = save("etagEtl", 10);
+
+        String etag = mockMvc.perform(get("/member1/" + id))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //StatelessSession은 AuditingEntityListener를 타지 않지만 lastModifiedDate를 직접 채우므로 ETag가 바뀐다.
+        bulkProcessor.transformMembers(id, id + 1, 10, member -> {
+            member.setAge(member.getAge() + 1);
+            return true;
+        });
+
+        mockMvc.perform(get("/member1/" + id).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+    }
+
+    @Test
+    public void membersNotModifiedUntilDelete() throws Exception {
+        save("etagList1", 10);
+        Long id = save("etagList2", 20);
+
+        String etag = mockMvc.perform(get("/members"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/members").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        //삭제도 회원 테이블 버전(변경 로그 offset)을 바꾼다.
+        transactionTemplate.executeWithoutResult(status -> memberRepository.deleteById(id));
+
+        mockMvc.perform(get("/members").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void membersKeepEntityFields() throws Exception {
+        Team team = transactionTemplate.execute(status -> teamRepository.save(new Team("shapeTeam")));
+        Long id = transactionTemplate.execute(status -> memberRepository.save(new Member("shapeMember", 30, team)).getId());
+        memberIds.add(id);
+
+        //expand 없이 호출하던 클라이언트는 엔티티를 내려주던 때와 같은 속성을 받는다.
+        mockMvc.perform(get("/members").param("sort", "id,desc").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(id))
+                .andExpect(jsonPath("$.content[0].age").value(30))
+                .andExpect(jsonPath("$.content[0].createdDate").exists())
+                .andExpect(jsonPath("$.content[0].lastModifiedBy").exists())
+                .andExpect(jsonPath("$.content[0].teamName").doesNotExist());
+
+        mockMvc.perform(get("/members").param("sort", "id,desc").param("size", "1").param("expand", "team"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].age").value(30))
+                .andExpect(jsonPath("$.content[0].teamName").value("shapeTeam"));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.deleteAllByIdInBatch(memberIds);
+            teamRepository.deleteById(team.getId());
+        });
+        memberIds.clear();
+    }
+
+    @Test
+    public void membersWithTeamChangedByTeamUpdate() throws Exception {
+        Team team = transactionTemplate.execute(status -> teamRepository.save(new Team("etagTeam")));
+        Long id = transactionTemplate.execute(status -> memberRepository.save(new Member("etagTeamMember", 10, team)).getId());
+        memberIds.add(id);
+
+        String etag = mockMvc.perform(get("/members").param("expand", "team"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/members").param("expand", "team").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        //팀 이름만 바뀌어도 expand=team 응답은 달라지므로 200
+        transactionTemplate.executeWithoutResult(status -> teamRepository.findById(team.getId()).get().setName("etagTeam2"));
+
+        mockMvc.perform(get("/members").param("expand", "team").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.deleteAllByIdInBatch(memberIds);
+            teamRepository.deleteById(team.getId());
+        });
+        memberIds.clear();
+    }
+
+    @Test
+    public void member2NotFound() throws Exception {
+        mockMvc.perform(get("/member2/" + Long.MAX_VALUE))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void autocompleteClampsSize() throws Exception {
+        save("autoClamp1", 10);
+
+        mockMvc.perform(get("/members/autocomplete").param("prefix", "autoClamp").param("size", "0"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]").value("autoClamp1")); //최소 1건
+        mockMvc.perform(get("/members/autocomplete").param("prefix", "autoClamp").param("size", "-5"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void changesPagesTombstonesByLogOffset() throws Exception {
+        String body = mockMvc.perform(get("/members/changes").param("size", "1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        long deletedFrom = objectMapper.readTree(body).get("nextDeletedFrom").asLong();
+        String logId = objectMapper.readTree(body).get("logId").asText();
+
+        Long id1 = save("tombstone1", 10);
+        Long id2 = save("tombstone2", 10);
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.deleteById(id1);
+            memberRepository.deleteById(id2);
+        });
+
+        //커서 이후의 삭제만 size 만큼씩 나누어 내려오고, 같은 삭제가 다시 내려오지 않는다.
+        List<Long> deletedIds = new ArrayList<>();
+        for (int i = 0; i < 10 && !deletedIds.contains(id2); i++) {
+            String page = mockMvc.perform(get("/members/changes")
+                            .param("deletedFrom", String.valueOf(deletedFrom)).param("logId", logId).param("size", "1"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            objectMapper.readTree(page).get("deletedIds").forEach(node -> deletedIds.add(node.asLong()));
+            deletedFrom = objectMapper.readTree(page).get("nextDeletedFrom").asLong();
+        }
+        assertThat(deletedIds).containsSubsequence(id1, id2).doesNotHaveDuplicates();
+    }
+
+    @Test
+    public void changesRequireFullSyncWhenLogIsUnknown() throws Exception {
+        //다른 로그(재시작 전)의 커서 -> 빠진 삭제가 있을 수 있으므로 410
+        mockMvc.perform(get("/members/changes").param("deletedFrom", "0").param("logId", "restarted"))
+                .andExpect(status().isGone());
+
+        //로그가 시작되기 전부터의 변경 -> 그 사이 삭제를 알 수 없으므로 410
+        mockMvc.perform(get("/members/changes").param("since", "2000-01-01T00:00:00"))
+                .andExpect(status().isGone());
+
+        //size는 1 ~ 1000 으로 제한
+        mockMvc.perform(get("/members/changes").param("size", "0"))
+                .andExpect(status().isOk());
+    }
+
+    private Long save(String username, int age) {
+        Long id = transactionTemplate.execute(status -> memberRepository.save(new Member(username, age)).getId());
+        memberIds.add(id);
+        return id;
+    }
+}
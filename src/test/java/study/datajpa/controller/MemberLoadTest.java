@@ -0,0 +1,223 @@
+package study.datajpa.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberRepository;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.*;
+
+@Tag("perf") //./gradlew perfTest 로만 실행된다.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "logging.level.org.hibernate.SQL=info",
+        "decorator.datasource.p6spy.enable-logging=false"
+})
+public class MemberLoadTest {
+
+    /**
+     * 동시 부하 테스트
+     *
+     * 실제 톰캣을 띄우고(RANDOM_PORT) 여러 스레드에서 아래 작업을 섞어서 계속 호출한다.
+     *  members : GET /members?page=..&size=20
+     *  member1 : GET /member1/{id}
+     *  bulk    : memberRepository.bulkAgePlus() (벌크 update)
+     *  lock    : memberRepository.findLockByUsername() (PESSIMISTIC_WRITE 조회)
+     * DB는 application.yml 설정을 그대로 쓴다. (기본: 로컬 H2 TCP 서버)
+     *
+     * 설정 (-Pperf.xxx)
+     *  perf.load.threads=16, perf.load.seconds=10, perf.load.seed=1000
+     *  perf.load.mix=members:45,member1:45,bulk:5,lock:5 (가중치)
+     *
+     * 결과: 작업별 처리량, p50/p99/p999 지연시간, 에러율 -> build/reports/perf/load-report.txt
+     * 릴리즈마다 같은 설정으로 돌려서 비교하면 동시성 성능이 나빠졌는지 알 수 있다.
+     */
+
+    private static final int THREADS = Integer.getInteger("perf.load.threads", 16);
+    private static final int SECONDS = Integer.getInteger("perf.load.seconds", 10);
+    private static final int SEED = Integer.getInteger("perf.load.seed", 1000);
+    private static final String MIX = System.getProperty("perf.load.mix", "members:45,member1:45,bulk:5,lock:5");
+
+    @LocalServerPort int port;
+    @Autowired MemberRepository memberRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    List<Member> members = new ArrayList<>();
+    HttpClient httpClient = HttpClient.newHttpClient();
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> memberRepository.deleteAllInBatch(members));
+    }
+
+    @Test
+    public void mixedLoad() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < SEED; i++) {
+                members.add(memberRepository.save(new Member("load" + i, i % 100)));
+            }
+        });
+
+        Map<String, Integer> weights = parseMix(MIX);
+        int totalWeight = weights.values().stream().mapToInt(Integer::intValue).sum();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long deadline = System.nanoTime() + SECONDS * 1_000_000_000L;
+        List<Future<Map<String, Stats>>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(worker(weights, totalWeight, deadline)));
+        }
+
+        Map<String, Stats> merged = new LinkedHashMap<>();
+        weights.keySet().forEach(name -> merged.put(name, new Stats()));
+        for (Future<Map<String, Stats>> future : futures) {
+            future.get().forEach((name, stats) -> merged.get(name).addAll(stats));
+        }
+        executor.shutdown();
+
+        String report = report(merged);
+        Path reportDir = Paths.get(System.getProperty("perf.reportDir", "build/reports/perf"));
+        Files.createDirectories(reportDir);
+        Files.writeString(reportDir.resolve("load-report.txt"), report);
+        System.out.println(report);
+
+        assertThat(merged.values().stream().mapToLong(stats -> stats.count).sum()).isPositive();
+    }
+
+    private Callable<Map<String, Stats>> worker(Map<String, Integer> weights, int totalWeight, long deadline) {
+        return () -> {
+            Map<String, Stats> local = new LinkedHashMap<>(); //스레드별로 모았다가 마지막에 합친다. (측정 중 동기화 비용 없음)
+            weights.keySet().forEach(name -> local.put(name, new Stats()));
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+
+            while (System.nanoTime() < deadline) {
+                String operation = pick(weights, random.nextInt(totalWeight));
+                long start = System.nanoTime();
+                boolean ok;
+                try {
+                    ok = execute(operation, random);
+                } catch (Exception e) {
+                    ok = false;
+                }
+                local.get(operation).record(System.nanoTime() - start, ok);
+            }
+            return local;
+        };
+    }
+
+    private boolean execute(String operation, ThreadLocalRandom random) throws Exception {
+        Member member = members.get(random.nextInt(members.size()));
+        switch (operation) {
+            case "members":
+                return get("/members?page=" + random.nextInt(SEED / 20) + "&size=20");
+            case "member1":
+                return get("/member1/" + member.getId());
+            case "bulk":
+                transactionTemplate.executeWithoutResult(status -> memberRepository.bulkAgePlus(95 + random.nextInt(5)));
+                return true;
+            case "lock":
+                transactionTemplate.executeWithoutResult(status -> memberRepository.findLockByUsername(member.getUsername()));
+                return true;
+            default:
+                throw new IllegalArgumentException("알 수 없는 작업: " + operation);
+        }
+    }
+
+    private boolean get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET().build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+    }
+
+    private String pick(Map<String, Integer> weights, int value) {
+        for (Map.Entry<String, Integer> weight : weights.entrySet()) {
+            value -= weight.getValue();
+            if (value < 0) {
+                return weight.getKey();
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] nameAndWeight = entry.trim().split(":");
+            weights.put(nameAndWeight[0], Integer.parseInt(nameAndWeight[1]));
+        }
+        return weights;
+    }
+
+    private String report(Map<String, Stats> merged) {
+        StringBuilder report = new StringBuilder()
+                .append("# MemberController load test\n")
+                .append(String.format("# threads=%d, seconds=%d, seed=%d, mix=%s%n%n", THREADS, SECONDS, SEED, MIX))
+                .append(String.format("%-8s %10s %10s %10s %10s %10s %8s%n", "op", "count", "ops/s", "p50(ms)", "p99(ms)", "p999(ms)", "err%"));
+        merged.forEach((name, stats) -> {
+            long[] latencies = stats.sortedLatencies();
+            report.append(String.format("%-8s %10d %10.1f %10.2f %10.2f %10.2f %8.2f%n",
+                    name, stats.count, (double) stats.count / SECONDS,
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                    stats.count == 0 ? 0 : 100.0 * stats.errors / stats.count));
+        });
+        return report.toString();
+    }
+
+    private double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    static class Stats {
+        long count;
+        long errors;
+        long[] latencies = new long[1024];
+
+        void record(long nanos, boolean ok) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, latencies.length * 2);
+            }
+            latencies[(int) count++] = nanos;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        void addAll(Stats other) {
+            for (int i = 0; i < other.count; i++) {
+                record(other.latencies[i], true);
+            }
+            errors += other.errors;
+        }
+
+        long[] sortedLatencies() {
+            long[] sorted = Arrays.copyOf(latencies, (int) count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package study.datajpa.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.MockMvcPrint;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberRepository;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Tag("perf") //./gradlew perfTest 로만 실행된다.
+@SpringBootTest(properties = {
+        "logging.level.org.hibernate.SQL=info",
+        "decorator.datasource.p6spy.enable-logging=false"
+})
+@AutoConfigureMockMvc(print = MockMvcPrint.NONE)
+public class MemberSerializationBenchmark {
+
+    /**
+     * /members 2000건 페이지를 JSON, CBOR로 받았을 때 응답 크기와 요청당 CPU 시간, 할당량 비교
+     * (조회 비용은 둘 다 같으므로 차이는 직렬화 비용이다)
+     *
+     * 결과: build/reports/perf/serialization-report.txt
+     */
+
+    private static final int PAGE_SIZE = 2000;
+    private static final int WARMUP = Integer.getInteger("perf.warmup", 200);
+    private static final int ITERATIONS = Integer.getInteger("perf.iterations", 500);
+
+    private static final MediaType APPLICATION_CBOR = MediaType.valueOf("application/cbor");
+
+    @Autowired MockMvc mockMvc;
+    @Autowired MemberRepository memberRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    List<Member> members = new ArrayList<>();
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> memberRepository.deleteAllInBatch(members));
+    }
+
+    @Test
+    public void jsonVersusCbor() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                members.add(memberRepository.save(new Member("member" + i, i % 100)));
+            }
+        });
+
+        RequestBuilder json = get("/members").param("size", String.valueOf(PAGE_SIZE)).accept(MediaType.APPLICATION_JSON);
+        RequestBuilder cbor = get("/members").param("size", String.valueOf(PAGE_SIZE)).accept(APPLICATION_CBOR);
+
+        //같은 내용인지 먼저 확인
+        byte[] jsonBody = mockMvc.perform(json).andExpect(status().isOk()).andReturn().getResponse().getContentAsByteArray();
+        byte[] cborBody = mockMvc.perform(cbor).andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        JsonNode fromJson = new ObjectMapper().readTree(jsonBody);
+        JsonNode fromCbor = new ObjectMapper(new CBORFactory()).readTree(cborBody);
+        assertThat(fromCbor).isEqualTo(fromJson);
+        assertThat(cborBody.length).isLessThan(jsonBody.length);
+
+        String report = "# /members?size=" + PAGE_SIZE + " JSON vs CBOR\n"
+                + String.format("# java=%s, warmup=%d, iterations=%d%n%n", System.getProperty("java.version"), WARMUP, ITERATIONS)
+                + String.format("%-6s %12s %16s %16s%n", "format", "bytes", "cpu-us/request", "alloc/request")
+                + measure("json", json, jsonBody.length)
+                + measure("cbor", cbor, cborBody.length);
+
+        Path reportDir = Paths.get(System.getProperty("perf.reportDir", "build/reports/perf"));
+        Files.createDirectories(reportDir);
+        Files.writeString(reportDir.resolve("serialization-report.txt"), report);
+        System.out.println(report);
+    }
+
+    private String measure(String name, RequestBuilder request, int bytes) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            mockMvc.perform(request);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long cpuBefore = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            mockMvc.perform(request);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        long cpu = threads.getCurrentThreadCpuTime() - cpuBefore;
+
+        return String.format("%-6s %,12d %16.1f %,16d%n", name, bytes, cpu / 1000.0 / ITERATIONS, allocated / ITERATIONS);
+    }
+}
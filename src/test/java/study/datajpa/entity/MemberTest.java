@@ -1,5 +1,8 @@
 package study.datajpa.entity;
 
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -83,4 +86,63 @@ public class MemberTest {
         System.out.println("findMember.createdBy = " + findMember.getCreatedBy());
         System.out.println("findMember.updatedBy = " + findMember.getLastModifiedBy());
     }
+
+    @Test
+    public void changeTeamWithoutLoadingMembers() {
+        //given - 팀A 회원 50명, 팀B 회원 1명
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        for (int i = 0; i < 50; i++) {
+            em.persist(new Member("member" + i, i, teamA));
+        }
+        Member moving = new Member("moving", 10, teamB);
+        em.persist(moving);
+
+        em.flush();
+        em.clear();
+
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            Team findTeamA = em.find(Team.class, teamA.getId());
+            Member findMoving = em.find(Member.class, moving.getId());
+            long collectionLoads = statistics.getCollectionLoadCount();
+
+            //when - 신규 회원 추가, 다른 팀 회원 이동
+            Member created = new Member("created", 20, findTeamA);
+            em.persist(created);
+            findMoving.changeTeam(findTeamA);
+
+            //then - members 컬렉션을 로딩하지 않았다.
+            assertEquals(collectionLoads, statistics.getCollectionLoadCount());
+            assertFalse(Hibernate.isInitialized(findTeamA.getMembers()));
+
+            //나중에 로딩하면 쌓아둔 add가 반영되어 있다. (flush 전)
+            assertEquals(51 + 1, findTeamA.getMembers().size());
+            assertTrue(findTeamA.getMembers().contains(findMoving));
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+
+        em.flush();
+        em.clear();
+
+        assertEquals(52, em.find(Team.class, teamA.getId()).getMembers().size());
+        assertEquals(0, em.find(Team.class, teamB.getId()).getMembers().size());
+    }
+
+    @Test
+    public void changeTeamKeepsLoadedCollectionsConsistent() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        Member member = new Member("member1", 10, teamA);
+
+        member.changeTeam(teamB);
+
+        //이미 메모리에 있는 컬렉션(로딩된 컬렉션)은 양쪽 다 맞춰준다.
+        assertFalse(teamA.getMembers().contains(member));
+        assertTrue(teamB.getMembers().contains(member));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = "member.write-behind.enabled=true")
+@Transactional
+public class MemberAgeWriteBehindBufferTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired MemberAgeWriteBehindBuffer writeBehindBuffer;
+
+    @Test
+    public void coalesceAndFlush() {
+        //given
+        Member member = memberRepository.save(new Member("member1", 10));
+        em.flush();
+
+        //when
+        writeBehindBuffer.updateAge(member.getId(), 11);
+        writeBehindBuffer.updateAge(member.getId(), 12);
+        writeBehindBuffer.updateAge(member.getId(), 13);
+
+        assertThat(writeBehindBuffer.getQueueSize()).isEqualTo(1); //같은 회원의 변경은 하나로 합쳐진다.
+
+        int flushed = writeBehindBuffer.flush();
+        em.clear();
+
+        //then
+        assertThat(flushed).isEqualTo(1); //update 쿼리는 한 번만
+        assertThat(writeBehindBuffer.getQueueSize()).isEqualTo(0);
+        assertThat(writeBehindBuffer.getLagMillis()).isEqualTo(0);
+        assertThat(memberRepository.findById(member.getId()).get().getAge()).isEqualTo(13);
+    }
+
+    @Test
+    public void skipDeletedMember() {
+        //given
+        Member member = memberRepository.save(new Member("member1", 10));
+        em.flush();
+        writeBehindBuffer.updateAge(member.getId(), 11);
+        writeBehindBuffer.updateAge(-1L, 20); //없는 회원 -> update 0 row
+        long skipped = writeBehindBuffer.getSkippedCount();
+
+        //when
+        int flushed = writeBehindBuffer.flush();
+
+        //then
+        assertThat(flushed).isEqualTo(1); //반영된 row만 센다.
+        assertThat(writeBehindBuffer.getSkippedCount()).isEqualTo(skipped + 1);
+        assertThat(writeBehindBuffer.getLagMillis()).isEqualTo(0);
+    }
+}
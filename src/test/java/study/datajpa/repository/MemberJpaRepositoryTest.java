@@ -4,10 +4,20 @@ import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.test.annotation.Rollback;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.changelog.ChangeType;
+import study.datajpa.changelog.EntityChangeLog;
+import study.datajpa.entity.Item;
 import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.*;
@@ -20,6 +30,18 @@ public class MemberJpaRepositoryTest {
     @Autowired
     MemberJpaRepository memberJpaRepository;
 
+    @Autowired
+    TeamJpaRepository teamJpaRepository;
+
+    @Autowired
+    EntityChangeLog changeLog;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    EntityManager em;
+
     @Test
     public void testMember() {
 
@@ -138,4 +160,94 @@ public class MemberJpaRepositoryTest {
         //then
         assertThat(resultCount).isEqualTo(3);
     }
-}
\ No newline at end of file
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) //chunk마다 커밋하므로 트랜잭션 밖에서 호출하고 직접 정리한다.
+    public void deleteByTeamInBatches() {
+        //given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        Member memberB = new Member("memberB", 10, teamB);
+        transactionTemplate.executeWithoutResult(status -> {
+            teamJpaRepository.save(teamA);
+            teamJpaRepository.save(teamB);
+            for (int i = 0; i < 5; i++) {
+                memberJpaRepository.save(new Member("member" + i, 10, teamA));
+            }
+            memberJpaRepository.save(memberB);
+        });
+        long offset = changeLog.getNextOffset();
+
+        //when
+        int deleted = memberJpaRepository.deleteByTeamInBatches(teamA.getId(), 2); //2건씩 3번 나눠서 delete
+
+        //then
+        assertThat(deleted).isEqualTo(5);
+        assertThat(changeLog.read(offset, 100)) //지운 회원마다 DELETE가 남는다. (tombstone)
+                .filteredOn(change -> change.getType() == ChangeType.DELETE)
+                .hasSize(5);
+        assertThat(memberJpaRepository.findById(memberB.getId())).isPresent(); //다른 팀 회원은 그대로
+
+        //트랜잭션 안에서 호출하면 나눠서 커밋할 수 없으므로 막는다. (IllegalStateException -> @Repository 예외 변환)
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(
+                status -> memberJpaRepository.deleteByTeamInBatches(teamB.getId(), 2)))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            memberJpaRepository.delete(memberJpaRepository.find(memberB.getId()));
+            teamJpaRepository.delete(teamJpaRepository.findById(teamA.getId()).get());
+            teamJpaRepository.delete(teamJpaRepository.findById(teamB.getId()).get());
+        });
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void deleteAllByIdInBatches() {
+        //given
+        Member m1 = new Member("member1", 10);
+        Member m2 = new Member("member2", 10);
+        Member m3 = new Member("member3", 10);
+        transactionTemplate.executeWithoutResult(status -> {
+            memberJpaRepository.save(m1);
+            memberJpaRepository.save(m2);
+            memberJpaRepository.save(m3);
+        });
+        long count = memberJpaRepository.count();
+
+        //when
+        int deleted = memberJpaRepository.deleteAllByIdInBatches(Arrays.asList(m1.getId(), m2.getId()), 1);
+
+        //then
+        assertThat(deleted).isEqualTo(2);
+        assertThat(memberJpaRepository.count()).isEqualTo(count - 2);
+        assertThat(memberJpaRepository.findById(m1.getId())).isEmpty();
+        assertThat(memberJpaRepository.findById(m3.getId())).isPresent();
+
+        memberJpaRepository.deleteAllByIdInBatches(List.of(m3.getId()), 1);
+
+        //batchSize가 0 이하면 끝나지 않으므로 막는다. (IllegalArgumentException -> @Repository 예외 변환)
+        assertThatThrownBy(() -> memberJpaRepository.deleteAllByIdInBatches(List.of(m3.getId()), 0))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class)
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> memberJpaRepository.deleteByTeamInBatches(1L, 0))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class)
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @Rollback
+    public void deleteTeamDetachingMembers() {
+        //given
+        Team team = teamJpaRepository.save(new Team("teamA"));
+        Member member = memberJpaRepository.save(new Member("member1", 10, team));
+        em.persist(new Item("detachTeamItem")); //벌크 쿼리와 상관없는 테이블의 변경
+
+        //when
+        teamJpaRepository.deleteByIdDetachingMembers(team.getId());
+
+        //then
+        assertThat(em.find(Item.class, "detachTeamItem")).isNotNull(); //em.clear() 전에 flush 되어 버려지지 않는다.
+        assertThat(teamJpaRepository.findById(team.getId())).isEmpty();
+        assertThat(memberJpaRepository.find(member.getId()).getTeam()).isNull(); //회원은 남고 FK만 끊긴다.
+    }
+}
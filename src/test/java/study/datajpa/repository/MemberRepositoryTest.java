@@ -1,9 +1,13 @@
 package study.datajpa.repository;
 
 import org.assertj.core.api.Assertions;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Slice;
@@ -11,15 +15,20 @@ import org.springframework.data.domain.Sort;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.transaction.annotation.Transactional;
 import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.dto.TeamDto;
+import study.datajpa.dto.TeamStatsDto;
 import study.datajpa.dto.UsernameOnlyDto;
 import study.datajpa.entity.Member;
 import study.datajpa.entity.Team;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -143,6 +152,21 @@ public class MemberRepositoryTest {
         }
     }
 
+    @Test
+    public void findByUsernameStartingWith() {
+        memberRepository.save(new Member("prefix_c", 10));
+        memberRepository.save(new Member("prefix_a", 10));
+        memberRepository.save(new Member("prefix_b", 10));
+        memberRepository.save(new Member("prefixXd", 10));
+        memberRepository.save(new Member("other", 10));
+
+        List<UsernameOnlyDto> result = memberRepository.findByUsernameStartingWith("prefix_",
+                PageRequest.of(0, 2, Sort.by("username")), UsernameOnlyDto.class);
+
+        //_ 는 like의 와일드카드지만 escape 되므로 prefixXd 는 조회되지 않는다.
+        assertThat(result).extracting("username").containsExactly("prefix_a", "prefix_b");
+    }
+
     @Test
     public void returnType() {
         Member m1 = new Member("AAA", 10);
@@ -222,6 +246,29 @@ public class MemberRepositoryTest {
         assertThat(slice.hasNext()).isTrue();
     }
 
+    @Test
+    public void pagingByTeam() throws Exception {
+        //given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        teamRepository.save(teamA);
+        teamRepository.save(teamB);
+
+        memberRepository.save(new Member("member1", 10, teamA));
+        memberRepository.save(new Member("member2", 10, teamA));
+        memberRepository.save(new Member("member3", 10, teamA));
+        memberRepository.save(new Member("member4", 10, teamB));
+
+        PageRequest pageRequest = PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "username"));
+
+        //when
+        Page<Member> page = memberRepository.findPageByTeamIdAndAge(teamA.getId(), 10, pageRequest);
+
+        //then
+        assertThat(page.getContent()).extracting("username").containsExactly("member3", "member2");
+        assertThat(page.getTotalElements()).isEqualTo(3); //teamB 회원은 포함되지 않는다.
+    }
+
     @Test
     public void bulkUpdate() throws Exception {
 
@@ -261,6 +308,30 @@ public class MemberRepositoryTest {
 
     }
 
+    @Test
+    public void findChangedSince() throws Exception {
+        //given
+        Member m1 = memberRepository.save(new Member("member1", 10));
+        Member m2 = memberRepository.save(new Member("member2", 10));
+        Member m3 = memberRepository.save(new Member("member3", 10));
+        em.flush();
+        em.clear(); //워터마크는 DB에 저장된 값(정밀도가 잘린 값)을 써야 하므로 DB에서 다시 읽는다.
+
+        //m1 바로 앞을 워터마크로 -> 앞선 테스트에서 커밋된 회원은 수정 시각이 m1 이전이거나, 같아도 id가 작으므로 빠진다.
+        LocalDateTime since = memberRepository.findById(m1.getId()).get().getLastModifiedDate();
+        LocalDateTime until = LocalDateTime.now().plusMinutes(1);
+
+        //when
+        List<Member> first = memberRepository.findChangedSince(since, m1.getId() - 1, until, PageRequest.of(0, 2));
+        Member last = first.get(first.size() - 1);
+        List<Member> next = memberRepository.findChangedSince(last.getLastModifiedDate(), last.getId(), until, PageRequest.of(0, 2));
+
+        //then
+        assertThat(first).extracting("id").containsExactly(m1.getId(), m2.getId());
+        assertThat(next).extracting("id").containsExactly(m3.getId()); //워터마크 이후 것만, 중복 없이
+        assertThat(memberRepository.findChangedSince(since, m1.getId() - 1, since, PageRequest.of(0, 2))).isEmpty(); //until 이후 수정분은 다음에
+    }
+
     @Test
     public void findMemberLazyFetch() throws Exception {
         //given
@@ -298,6 +369,59 @@ public class MemberRepositoryTest {
         }
     }
 
+    @Test
+    public void teamStats() throws Exception {
+        //given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        teamRepository.save(teamA);
+        teamRepository.save(teamB);
+
+        memberRepository.save(new Member("member1", 10, teamA));
+        memberRepository.save(new Member("member2", 20, teamA));
+
+        //when
+        List<TeamStatsDto> stats = teamRepository.findTeamStatsByIdBetween(teamA.getId(), teamB.getId());
+
+        //then
+        assertThat(stats).extracting("teamName", "memberCount", "averageAge")
+                .containsExactlyInAnyOrder(tuple("teamA", 2L, 15.0), tuple("teamB", 0L, 0.0)); //회원이 없는 팀도 조회된다.
+    }
+
+    @Test
+    public void teamsWithMembers() {
+        //given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        teamRepository.save(teamA);
+        teamRepository.save(teamB);
+        for (int i = 0; i < 3; i++) {
+            memberRepository.save(new Member("member" + i, i, teamA));
+        }
+
+        em.flush();
+        em.clear();
+
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        try {
+            //when - 가장 최근 팀 2개
+            Page<TeamDto> page = teamRepository.findTeamsWithMembers(PageRequest.of(0, 2, Sort.by("id").descending()));
+
+            //then - 팀 조회, count, 회원 조회 3번 / 엔티티는 만들지 않음
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+            assertThat(statistics.getEntityLoadCount()).isZero();
+
+            assertThat(page.getContent()).extracting("name").containsExactly("teamB", "teamA");
+            assertThat(page.getContent().get(0).getMembers()).isEmpty();
+            assertThat(page.getContent().get(1).getMembers()).extracting("username")
+                    .containsExactly("member0", "member1", "member2");
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
     @Test
     public void queryHint() throws Exception {
 
@@ -382,6 +506,183 @@ public class MemberRepositoryTest {
         Assertions.assertThat(result.size()).isEqualTo(1);
     }
 
+    @Test
+    public void projectionById() {
+        //given
+        Member m1 = new Member("m1", 0);
+        em.persist(m1);
+
+        em.flush();
+        em.clear();
+
+        //when
+        Optional<UsernameOnlyDto> result = memberRepository.findProjectionById(m1.getId(), UsernameOnlyDto.class);
+
+        //then
+        assertThat(result.get().getUsername()).isEqualTo("m1");
+        assertThat(memberRepository.findProjectionById(-1L, UsernameOnlyDto.class)).isEmpty();
+    }
+
+    @Test
+    public void findByIdWithExpand() {
+        //given
+        Team teamA = new Team("expandTeam");
+        em.persist(teamA);
+        Member m1 = new Member("expand1", 10, teamA);
+        em.persist(m1);
+
+        em.flush();
+        em.clear();
+
+        //when - expand 없음 -> 팀은 프록시
+        Member lazy = memberRepository.findById(m1.getId(), Set.of()).get();
+        assertThat(Hibernate.isInitialized(lazy.getTeam())).isFalse();
+
+        em.clear();
+
+        //when - expand=team -> 팀까지 한번에 조회
+        Member expanded = memberRepository.findById(m1.getId(), Set.of("team")).get();
+        assertThat(Hibernate.isInitialized(expanded.getTeam())).isTrue();
+
+        em.clear();
+
+        Page<Member> page = memberRepository.findAll(PageRequest.of(0, 10, Sort.by("id").descending()), Set.of("team"));
+        assertThat(page.getContent()).allMatch(member -> Hibernate.isInitialized(member.getTeam()));
+        assertThat(page.getContent().get(0).getId()).isEqualTo(m1.getId());
+
+        //리포지토리 예외 변환 -> 스프링 예외로 나온다.
+        assertThatThrownBy(() -> memberRepository.findById(m1.getId(), Set.of("members")))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class);
+    }
+
+    @Test
+    public void specSearch() {
+        //given
+        Team teamA = new Team("specTeamA");
+        Team teamB = new Team("specTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("spec1", 10, teamA));
+        em.persist(new Member("spec2", 20, teamA));
+        em.persist(new Member("spec3", 30, teamB));
+
+        em.flush();
+        em.clear();
+
+        //when
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("spec");
+        condition.setAgeGoe(15);
+        Page<Member> byAge = memberRepository.findAll(MemberSpec.search(condition), PageRequest.of(0, 10, Sort.by("age")));
+
+        condition.setAgeGoe(null);
+        condition.setTeamName("specTeamA");
+        List<Member> byTeam = memberRepository.findAll(MemberSpec.search(condition), Sort.by("username"));
+
+        //then
+        assertThat(byAge.getContent()).extracting("username").containsExactly("spec2", "spec3");
+        assertThat(byAge.getTotalElements()).isEqualTo(2);
+        assertThat(byTeam).extracting("username").containsExactly("spec1", "spec2");
+    }
+
+    @Test
+    public void specSearchEscapesWildcards() {
+        em.persist(new Member("spec_1", 10));
+        em.persist(new Member("specX1", 10));
+        em.persist(new Member("spec%1", 10));
+        em.flush();
+        em.clear();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("spec_");
+        assertThat(memberRepository.findAll(MemberSpec.search(condition))).extracting("username").containsExactly("spec_1");
+
+        condition.setUsername("spec%");
+        assertThat(memberRepository.findAll(MemberSpec.search(condition))).extracting("username").containsExactly("spec%1");
+    }
+
+    @Test
+    public void specSearchReusesQueryPlan() {
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setUsername("plan");
+            condition.setAgeGoe(10);
+            memberRepository.findAll(MemberSpec.search(condition)); //처음 보는 조건 모양 -> 파싱
+
+            long missCount = statistics.getQueryPlanCacheMissCount();
+
+            //같은 조건 모양, 다른 값 -> 같은 JPQL이므로 플랜 캐시 적중
+            condition.setUsername("other");
+            condition.setAgeGoe(99);
+            memberRepository.findAll(MemberSpec.search(condition));
+
+            assertThat(statistics.getQueryPlanCacheMissCount()).isEqualTo(missCount);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    public void searchMatchesSpec() {
+        //given
+        Team teamA = new Team("searchTeamA");
+        Team teamB = new Team("searchTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("search1", 10, teamA));
+        em.persist(new Member("search2", 20, teamA));
+        em.persist(new Member("search_3", 30, teamB));
+        em.persist(new Member("searchX3", 40));
+        em.flush();
+        em.clear();
+
+        //when, then - 조건 모양마다 MemberSpec.search와 같은 결과
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("search");
+        condition.setAgeGoe(15);
+        PageRequest byAge = PageRequest.of(0, 2, Sort.by("age"));
+        Page<Member> page = memberRepository.search(condition, byAge);
+        assertThat(page.getContent()).extracting("username").containsExactly("search2", "search_3");
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent()).isEqualTo(memberRepository.findAll(MemberSpec.search(condition), byAge).getContent());
+
+        condition.setAgeGoe(null);
+        condition.setAgeLoe(25);
+        condition.setTeamName("searchTeamA");
+        assertThat(memberRepository.search(condition, PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "username"))).getContent())
+                .extracting("username").containsExactly("search2", "search1");
+
+        MemberSearchCondition wildcard = new MemberSearchCondition();
+        wildcard.setUsername("search_"); //_는 와일드카드가 아니라 글자
+        assertThat(memberRepository.search(wildcard, PageRequest.of(0, 10)).getContent())
+                .extracting("username").containsExactly("search_3");
+    }
+
+    @Test
+    public void searchReusesQueryPlan() {
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setUsername("plan");
+            condition.setTeamName("planTeam");
+            memberRepository.search(condition, PageRequest.of(0, 10, Sort.by("age"))); //처음 보는 조건 모양 -> JPQL 생성, 파싱
+
+            long missCount = statistics.getQueryPlanCacheMissCount();
+
+            //같은 조건 모양, 다른 값 -> 캐시된 JPQL, 플랜 캐시 적중
+            condition.setUsername("other");
+            condition.setTeamName("otherTeam");
+            memberRepository.search(condition, PageRequest.of(0, 10, Sort.by("age")));
+
+            assertThat(statistics.getQueryPlanCacheMissCount()).isEqualTo(missCount);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
     @Test
     public void naticeQuery() {
 
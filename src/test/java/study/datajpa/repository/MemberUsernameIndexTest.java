@@ -0,0 +1,113 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.changelog.ChangeType;
+import study.datajpa.changelog.EntityChange;
+import study.datajpa.entity.Member;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = "member.username-index.enabled=true")
+public class MemberUsernameIndexTest {
+
+    //인덱스는 커밋 이후에 반영되므로 @Transactional 대신 TransactionTemplate으로 커밋한다.
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired MemberUsernameIndex usernameIndex;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    @Test
+    public void followCommittedChanges() {
+        //given
+        Member member = transactionTemplate.execute(status -> memberRepository.save(new Member("indexA", 10)));
+        assertThat(usernameIndex.findIds("indexA")).containsExactly(member.getId());
+
+        //when - username 변경
+        transactionTemplate.executeWithoutResult(status ->
+                memberRepository.findById(member.getId()).get().setUsername("indexB"));
+
+        //then
+        assertThat(usernameIndex.findIds("indexA")).isEmpty();
+        assertThat(usernameIndex.findIds("indexB")).containsExactly(member.getId());
+
+        long hitCount = usernameIndex.getHitCount();
+        assertThat(memberRepository.findByUsername("indexB")).extracting("id").containsExactly(member.getId());
+        assertThat(memberRepository.findOptionalByUsername("indexB")).isPresent();
+        assertThat(memberRepository.findByNames(List.of("indexA", "indexB"))).extracting("id").containsExactly(member.getId());
+        assertThat(usernameIndex.getHitCount()).isGreaterThan(hitCount);
+
+        //when - 삭제
+        transactionTemplate.executeWithoutResult(status -> memberRepository.deleteById(member.getId()));
+
+        //then
+        assertThat(usernameIndex.findIds("indexB")).isEmpty();
+    }
+
+    @Test
+    public void missDoesNotHitDatabase() {
+        long missCount = usernameIndex.getMissCount();
+
+        assertThat(memberRepository.findByUsername("noSuchUser")).isEmpty();
+        assertThat(memberRepository.findMemberByUsername("noSuchUser")).isNull();
+
+        assertThat(usernameIndex.getMissCount()).isEqualTo(missCount + 2);
+    }
+
+    @Test
+    public void writeTransactionReadsDatabase() {
+        //아직 커밋 안 된 내 변경은 인덱스에 없으므로 쓰기 트랜잭션 안에서는 DB에서 찾아야 한다.
+        List<Member> found = transactionTemplate.execute(status -> {
+            memberRepository.save(new Member("indexUncommitted", 10));
+            List<Member> result = memberRepository.findByUsername("indexUncommitted");
+            status.setRollbackOnly();
+            return result;
+        });
+
+        assertThat(found).hasSize(1);
+    }
+
+    @Test
+    public void rollbackIsNotIndexed() {
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.saveAndFlush(new Member("indexRollback", 10));
+            status.setRollbackOnly();
+        });
+
+        assertThat(usernameIndex.findIds("indexRollback")).isEmpty();
+    }
+
+    @Test
+    public void bulkNotTouchingUsernameDoesNotRebuild() {
+        long rebuildCount = usernameIndex.getRebuildCount();
+
+        transactionTemplate.executeWithoutResult(status -> memberRepository.bulkAgePlus(1000)); //나이만 바꾼다.
+
+        assertThat(usernameIndex.isReady()).isTrue();
+        assertThat(usernameIndex.getRebuildCount()).isEqualTo(rebuildCount);
+    }
+
+    @Test
+    public void bulkTouchingUsernameRebuildsInBackground() throws Exception {
+        Member member = transactionTemplate.execute(status -> memberRepository.save(new Member("indexBulk", 10)));
+        long rebuildCount = usernameIndex.getRebuildCount();
+
+        //어떤 속성을 바꿨는지 모르는 벌크 (StatelessSession 등)
+        usernameIndex.onChange(new EntityChange(0, "Member", null, ChangeType.BULK, LocalDateTime.now(), Map.of(), null));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (usernameIndex.getRebuildCount() == rebuildCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(usernameIndex.getRebuildCount()).isGreaterThan(rebuildCount);
+        assertThat(usernameIndex.findIds("indexBulk")).containsExactly(member.getId());
+
+        transactionTemplate.executeWithoutResult(status -> memberRepository.deleteById(member.getId()));
+    }
+}
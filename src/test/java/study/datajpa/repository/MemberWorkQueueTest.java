@@ -0,0 +1,83 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+public class MemberWorkQueueTest {
+
+    //워커마다 자기 트랜잭션으로 가져가고 커밋해야 잠금이 풀리므로 TransactionTemplate을 쓰고 직접 정리한다.
+    //H2는 SKIP LOCKED 없이 잠긴 row를 기다리므로 여기서는 정확히 한번씩 가져가는지만 확인한다. (건너뛰기, 처리량은 운영 DB에서 확인)
+
+    private static final int PENDING_AGE = 10_000; //다른 테스트 데이터와 겹치지 않는 나이 -> 처리하면 PENDING_AGE 밑으로 내린다.
+    private static final int ITEMS = 300;
+    private static final int WORKERS = 4;
+    private static final int BATCH = 10;
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    List<Long> memberIds = new ArrayList<>();
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> memberRepository.deleteAllByIdInBatch(memberIds));
+    }
+
+    @Test
+    public void claimConcurrently() throws Exception {
+        //given
+        transactionTemplate.executeWithoutResult(status -> IntStream.range(0, ITEMS)
+                .forEach(i -> memberIds.add(memberRepository.save(new Member("job" + i, PENDING_AGE + i)).getId())));
+
+        Map<Long, AtomicInteger> processed = new ConcurrentHashMap<>();
+
+        //when - 가져올 게 없을 때까지 워커들이 BATCH 건씩 가져가서 처리
+        ExecutorService executor = Executors.newFixedThreadPool(WORKERS);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < WORKERS; i++) {
+            workers.add(executor.submit(() -> {
+                while (true) {
+                    Integer claimed = transactionTemplate.execute(status -> {
+                        List<Member> batch = memberRepository.claimByAgeGoe(PENDING_AGE, PageRequest.of(0, BATCH));
+                        for (Member member : batch) {
+                            member.setAge(member.getAge() - PENDING_AGE); //처리 완료 -> 다음 claim 대상에서 빠진다.
+                            processed.computeIfAbsent(member.getId(), id -> new AtomicInteger()).incrementAndGet();
+                        }
+                        return batch.size();
+                    });
+                    if (claimed == 0) {
+                        return;
+                    }
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executor.shutdown();
+
+        //then - 모든 회원이 정확히 한번씩 처리되었다.
+        assertThat(processed.keySet()).containsExactlyInAnyOrderElementsOf(memberIds);
+        assertThat(processed.values().stream().map(AtomicInteger::get).collect(Collectors.toSet())).containsExactly(1);
+        assertThat(memberRepository.findAllById(memberIds)).allMatch(member -> member.getAge() < PENDING_AGE);
+    }
+}
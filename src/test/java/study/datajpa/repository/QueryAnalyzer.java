@@ -0,0 +1,208 @@
+package study.datajpa.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+public class QueryAnalyzer {
+
+    /**
+     * @Query(JPQL, 네이티브), @NamedQuery 문자열을 정규식으로 훑어서 성능 문제가 되는 패턴을 찾는다.
+     * 쿼리 파서가 아니므로 서브쿼리 등 복잡한 쿼리는 보지 않는다. 이 프로젝트 쿼리 정도를 대상으로 한다.
+     *
+     * 1. 조인 조건 없는 조인 (on 없는 조인, from a, b) -> 카티션 곱
+     * 2. countQuery가 본 쿼리와 다른 테이블을 세거나, 본 쿼리의 (inner) 조인이 빠져서 건수가 다름
+     * 3. where 도, 페이징도 없이 여러 건을 반환 -> 테이블 전체를 읽어서 메모리에 올린다.
+     * 4. 인덱스를 못 타는 조건 (컬럼에 함수, 컬럼에 연산, like '%...')
+     */
+
+    private static final String END = "(?=\\s(?:where|group by|order by|having|limit)\\s|$)";
+    private static final Pattern FROM = Pattern.compile("\\sfrom\\s+(.*?)" + END);
+    private static final Pattern WHERE = Pattern.compile("\\swhere\\s+(.*?)(?=\\s(?:group by|order by|having|limit)\\s|$)");
+    private static final Pattern JOIN = Pattern.compile("\\b((?:left|right|inner|full|cross)\\s+(?:outer\\s+)?)?join\\s+(?:fetch\\s+)?([\\w.]+)");
+    private static final Pattern NEXT_CLAUSE = Pattern.compile("\\s(?:(?:left|right|inner|full|cross)\\s+(?:outer\\s+)?)?join\\s|\\s(?:where|group by|order by|having|limit)\\s");
+    private static final Pattern JOIN_CONDITION = Pattern.compile("\\b(?:on|with|using)\\b");
+    private static final Pattern AGGREGATE_ONLY = Pattern.compile("^select\\s+(?:(?:count|max|min|sum|avg)\\s*\\([^)]*\\)(?:\\s+as\\s+\\w+)?\\s*,?\\s*)+\\sfrom\\s");
+
+    private static final Pattern FUNCTION_ON_COLUMN = Pattern.compile(
+            "\\b(?:lower|upper|trim|substring|substr|concat|coalesce|year|month|day|cast|abs|length|str)\\s*\\(\\s*[a-z_]\\w*\\.\\w+");
+    private static final Pattern LEADING_WILDCARD = Pattern.compile("\\blike\\s+(?:'%|%|concat\\s*\\(\\s*'%')");
+    private static final Pattern ARITHMETIC_ON_COLUMN = Pattern.compile(
+            "[a-z_]\\w*\\.\\w+\\s*[-+*/]\\s*[\\w:.]+\\s*(?:=|<>|!=|<=|>=|<|>)");
+
+    public static class QueryDefinition {
+        final String location;
+        final String query;
+        final String countQuery;
+        final boolean nativeQuery;
+        final boolean multiValued; //List, Page 처럼 여러 건을 반환
+        final boolean paged; //Pageable 파라미터가 있음
+
+        QueryDefinition(String location, String query, String countQuery, boolean nativeQuery, boolean multiValued, boolean paged) {
+            this.location = location;
+            this.query = query;
+            this.countQuery = countQuery;
+            this.nativeQuery = nativeQuery;
+            this.multiValued = multiValued;
+            this.paged = paged;
+        }
+
+        @Override
+        public String toString() {
+            return location;
+        }
+    }
+
+    //@Query(name = "...") 처럼 쿼리 문자열이 없는 메서드는 엔티티의 @NamedQuery 쪽에서 검사한다.
+    public static List<QueryDefinition> queriesOf(Class<?> repository) {
+        List<QueryDefinition> queries = new ArrayList<>();
+        for (Method method : repository.getDeclaredMethods()) {
+            Query query = method.getAnnotation(Query.class);
+            if (query == null || query.value().isEmpty()) {
+                continue;
+            }
+            Class<?> returnType = method.getReturnType();
+            boolean multiValued = Iterable.class.isAssignableFrom(returnType) || Stream.class.isAssignableFrom(returnType) || returnType.isArray();
+            boolean paged = Arrays.asList(method.getParameterTypes()).contains(Pageable.class);
+            queries.add(new QueryDefinition(repository.getSimpleName() + "." + method.getName(),
+                    query.value(), query.countQuery(), query.nativeQuery(), multiValued, paged));
+        }
+        return queries;
+    }
+
+    //반환 타입을 알 수 없으므로 여러 건을 반환한다고 보고 검사한다.
+    public static List<QueryDefinition> namedQueriesOf(Class<?> entity) {
+        List<NamedQuery> namedQueries = new ArrayList<>(Arrays.asList(entity.getAnnotationsByType(NamedQuery.class)));
+        NamedQueries container = entity.getAnnotation(NamedQueries.class);
+        if (container != null) {
+            namedQueries.addAll(Arrays.asList(container.value()));
+        }
+
+        List<QueryDefinition> queries = new ArrayList<>();
+        for (NamedQuery namedQuery : namedQueries) {
+            queries.add(new QueryDefinition("@NamedQuery " + namedQuery.name(), namedQuery.query(), "", false, true, false));
+        }
+        return queries;
+    }
+
+    public static List<String> analyze(Collection<QueryDefinition> queries) {
+        List<String> violations = new ArrayList<>();
+        for (QueryDefinition query : queries) {
+            for (String violation : analyze(query)) {
+                violations.add(query.location + ": " + violation);
+            }
+        }
+        return violations;
+    }
+
+    public static List<String> analyze(QueryDefinition definition) {
+        List<String> violations = new ArrayList<>();
+        String query = normalize(definition.query);
+
+        checkJoins(query, definition.nativeQuery, violations);
+        if (!definition.countQuery.isEmpty()) {
+            checkCountQuery(query, normalize(definition.countQuery), violations);
+        }
+        if (definition.multiValued && !definition.paged && isUnbounded(query)) {
+            violations.add("where 조건도 페이징도 없이 전체를 조회한다.");
+        }
+        checkPredicates(query, violations);
+
+        return violations;
+    }
+
+    private static void checkJoins(String query, boolean nativeQuery, List<String> violations) {
+        Matcher join = JOIN.matcher(query);
+        while (join.find()) {
+            String type = join.group(1) == null ? "" : join.group(1).trim();
+            String target = join.group(2);
+            if (type.startsWith("cross")) {
+                violations.add("cross join " + target);
+                continue;
+            }
+            if (!nativeQuery && target.contains(".")) { //JPQL 연관관계 경로 조인(m.team)은 조인 조건이 매핑에서 나온다.
+                continue;
+            }
+            if (!JOIN_CONDITION.matcher(untilNextClause(query, join.end())).find()) {
+                violations.add("조인 조건(on) 없는 조인: " + target + " -> 카티션 곱");
+            }
+        }
+
+        String from = group(FROM, query);
+        if (from != null && from.replaceAll("\\(.*?\\)", "").split("\\sjoin\\s")[0].contains(",") && group(WHERE, query) == null) {
+            violations.add("where 없는 from a, b -> 카티션 곱");
+        }
+    }
+
+    private static void checkCountQuery(String query, String countQuery, List<String> violations) {
+        String relation = mainRelation(query);
+        String countRelation = mainRelation(countQuery);
+        if (relation != null && !relation.equals(countRelation)) {
+            violations.add("countQuery가 다른 테이블을 센다: " + relation + " / " + countRelation);
+        }
+
+        //inner 조인은 건수를 바꿀 수 있으므로 countQuery에도 있어야 한다. (to-one left 조인은 건수가 같다)
+        Matcher join = JOIN.matcher(query);
+        while (join.find()) {
+            String type = join.group(1) == null ? "" : join.group(1).trim();
+            if ((type.isEmpty() || type.startsWith("inner")) && !countQuery.contains(" " + join.group(2))) {
+                violations.add("countQuery에 조인이 빠져있다: " + join.group(2));
+            }
+        }
+    }
+
+    private static boolean isUnbounded(String query) {
+        if (!query.startsWith("select")) { //update, delete
+            return false;
+        }
+        if (group(WHERE, query) != null || query.contains(" limit ") || query.contains(" group by ")) { //group by는 그룹 수만큼
+            return false;
+        }
+        return !AGGREGATE_ONLY.matcher(query).find(); //count(), max()만 있으면 한 건
+    }
+
+    private static void checkPredicates(String query, List<String> violations) {
+        String where = group(WHERE, query);
+        if (where == null) {
+            return;
+        }
+        if (FUNCTION_ON_COLUMN.matcher(where).find()) {
+            violations.add("where 절에서 컬럼에 함수 적용 -> 인덱스 사용 불가: " + where);
+        }
+        if (LEADING_WILDCARD.matcher(where).find()) {
+            violations.add("like '%...' (앞부분 와일드카드) -> 인덱스 사용 불가: " + where);
+        }
+        if (ARITHMETIC_ON_COLUMN.matcher(where).find()) {
+            violations.add("where 절에서 컬럼에 연산 -> 인덱스 사용 불가 (연산을 값 쪽으로 옮긴다): " + where);
+        }
+    }
+
+    private static String mainRelation(String query) {
+        String from = group(FROM, query);
+        return from == null ? null : from.split("[\\s,]")[0];
+    }
+
+    private static String untilNextClause(String query, int start) {
+        Matcher next = NEXT_CLAUSE.matcher(query);
+        return next.find(start) ? query.substring(start, next.start()) : query.substring(start);
+    }
+
+    private static String group(Pattern pattern, String query) {
+        Matcher matcher = pattern.matcher(query);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static String normalize(String query) {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+}
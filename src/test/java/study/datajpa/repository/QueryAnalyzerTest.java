@@ -0,0 +1,86 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.Test;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.QueryAnalyzer.QueryDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class QueryAnalyzerTest {
+
+    /**
+     * 리포지토리의 @Query, 엔티티의 @NamedQuery를 검사해서 위반이 있으면 테스트(빌드)가 실패한다.
+     * 스프링을 띄우지 않고 어노테이션만 읽는다.
+     */
+
+    //일부러 전체 조회를 보여주는 학습용 예제 메서드 - 새 메서드는 여기에 추가하지 말고 페이징이나 조건을 붙인다.
+    private static final Set<String> ALLOW_UNBOUNDED = Set.of(
+            "MemberRepository.findUsernameList",
+            "MemberRepository.findMemberDto",
+            "MemberRepository.findMemberFetchJoin",
+            "MemberRepository.findMemberEntityGraph"
+    );
+
+    @Test
+    public void repositoryQueries() {
+        List<QueryDefinition> queries = new ArrayList<>();
+        queries.addAll(QueryAnalyzer.queriesOf(MemberRepository.class));
+        queries.addAll(QueryAnalyzer.queriesOf(TeamRepository.class));
+        queries.addAll(QueryAnalyzer.namedQueriesOf(Member.class));
+
+        List<String> violations = QueryAnalyzer.analyze(queries).stream()
+                .filter(violation -> !(ALLOW_UNBOUNDED.contains(violation.substring(0, violation.indexOf(':')))
+                        && violation.contains("전체를 조회")))
+                .collect(Collectors.toList());
+
+        assertThat(queries).isNotEmpty();
+        assertThat(violations).isEmpty();
+    }
+
+    @Test
+    public void detectMissingJoinCondition() {
+        //수정 전 findByNativeProjection
+        QueryDefinition query = nativeQuery(
+                "SELECT m.member_id as id, m.username, t.name as teamName FROM member m left join team t",
+                "SELECT count(*) from member");
+
+        assertThat(QueryAnalyzer.analyze(query)).anyMatch(violation -> violation.contains("카티션 곱"));
+        assertThat(QueryAnalyzer.analyze(nativeQuery("select * from member m, team t", ""))).hasSize(1);
+        assertThat(QueryAnalyzer.analyze(nativeQuery(
+                "select * from member m left join team t on m.team_id = t.team_id where m.age > ?", ""))).isEmpty();
+    }
+
+    @Test
+    public void detectCountQueryMismatch() {
+        QueryDefinition otherTable = nativeQuery("select m.* from member m where m.age > ?", "select count(*) from team");
+        QueryDefinition missingJoin = new QueryDefinition("jpql", "select m from Member m join m.team t where t.name = :name",
+                "select count(m) from Member m", false, true, true);
+
+        assertThat(QueryAnalyzer.analyze(otherTable)).anyMatch(violation -> violation.contains("다른 테이블"));
+        assertThat(QueryAnalyzer.analyze(missingJoin)).anyMatch(violation -> violation.contains("조인이 빠져있다"));
+    }
+
+    @Test
+    public void detectUnboundedAndNonSargable() {
+        assertThat(QueryAnalyzer.analyze(jpql("select m from Member m"))).anyMatch(violation -> violation.contains("전체를 조회"));
+        assertThat(QueryAnalyzer.analyze(jpql("select count(m) from Member m"))).isEmpty();
+
+        assertThat(QueryAnalyzer.analyze(jpql("select m from Member m where lower(m.username) = :username"))).hasSize(1);
+        assertThat(QueryAnalyzer.analyze(jpql("select m from Member m where m.username like %:username"))).hasSize(1);
+        assertThat(QueryAnalyzer.analyze(jpql("select m from Member m where m.age + 1 > :age"))).hasSize(1);
+        assertThat(QueryAnalyzer.analyze(jpql("select m from Member m where m.username like :prefix"))).isEmpty();
+    }
+
+    private QueryDefinition nativeQuery(String query, String countQuery) {
+        return new QueryDefinition("native", query, countQuery, true, true, true);
+    }
+
+    private QueryDefinition jpql(String query) {
+        return new QueryDefinition("jpql", query, "", false, true, false);
+    }
+}
@@ -0,0 +1,127 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.changelog.ChangeType;
+import study.datajpa.changelog.EntityChange;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+public class QueryResultCacheTest {
+
+    //캐시는 쓰기 트랜잭션 밖에서만 쓰이고 커밋 후에 비워지므로 @Transactional 없이 TransactionTemplate으로 커밋한다.
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired TeamRepository teamRepository;
+    @Autowired QueryResultCacheInvalidator cacheInvalidator;
+    @Autowired CacheManager cacheManager;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    List<Member> members = new ArrayList<>();
+    List<Team> teams = new ArrayList<>();
+
+    @AfterEach
+    public void cleanUp() { //다른 테스트의 count 검증에 영향을 주지 않도록 지운다.
+        transactionTemplate.executeWithoutResult(status -> {
+            members.forEach(member -> memberRepository.deleteById(member.getId()));
+            teams.forEach(team -> teamRepository.deleteById(team.getId()));
+        });
+    }
+
+    @Test
+    public void cacheUntilMemberChanges() {
+        //given
+        members.add(transactionTemplate.execute(status -> memberRepository.save(new Member("cacheA", 10))));
+
+        //when
+        List<String> first = memberRepository.findUsernameList();
+        long hitCount = cacheInvalidator.stats().get("usernameList").hitCount();
+        List<String> second = memberRepository.findUsernameList();
+
+        //then
+        assertThat(second).isEqualTo(first);
+        assertThat(cacheInvalidator.stats().get("usernameList").hitCount()).isEqualTo(hitCount + 1); //쿼리 없이 캐시에서 반환
+        assertThatThrownBy(() -> second.add("changed")).isInstanceOf(UnsupportedOperationException.class); //호출자끼리 공유하므로 수정 불가
+
+        //when - 회원이 추가되면 커밋 시점에 캐시가 비워진다.
+        members.add(transactionTemplate.execute(status -> memberRepository.save(new Member("cacheB", 10))));
+
+        //then
+        assertThat(memberRepository.findUsernameList()).contains("cacheA", "cacheB");
+    }
+
+    @Test
+    public void invalidateOnlyDependentCaches() {
+        //given
+        memberRepository.findUsernameList();
+        memberRepository.findMemberDto();
+
+        //when - team 변경은 usernameList에 영향이 없다.
+        teams.add(transactionTemplate.execute(status -> teamRepository.save(new Team("cacheTeam"))));
+
+        //then
+        long hitCount = cacheInvalidator.stats().get("usernameList").hitCount();
+        memberRepository.findUsernameList();
+        assertThat(cacheInvalidator.stats().get("usernameList").hitCount()).isEqualTo(hitCount + 1);
+        long missCount = cacheInvalidator.stats().get("memberDto").missCount();
+        memberRepository.findMemberDto();
+        assertThat(cacheInvalidator.stats().get("memberDto").missCount()).isEqualTo(missCount + 1); //비워져서 다시 조회
+    }
+
+    @Test
+    public void staleResultIsNotCachedAfterInvalidation() {
+        Cache cache = cacheManager.getCache("usernameList");
+        cache.clear();
+
+        //miss -> (조회하는 동안 다른 트랜잭션이 커밋해서 비워짐) -> 오래된 결과 put
+        assertThat(cache.get("key")).isNull();
+        cacheInvalidator.onChange(new EntityChange(0, "Member", 1L, ChangeType.UPDATE, LocalDateTime.now(), Map.of(), null));
+        cache.put("key", List.of("stale"));
+
+        assertThat(cache.get("key")).isNull(); //넣지 않는다.
+
+        cache.put("key", List.of("fresh")); //miss 이후 무효화가 없으면 넣는다.
+        assertThat(cache.get("key").get()).isEqualTo(List.of("fresh"));
+        cache.clear();
+    }
+
+    @Test
+    public void failedLoadDoesNotLeaveMissBehind() {
+        Cache cache = cacheManager.getCache("usernameList");
+        cache.clear();
+
+        //miss 후 조회 메서드가 예외를 던져서 put이 오지 않음 -> 스레드에는 마지막 miss 하나만 남는다.
+        assertThat(cache.get("failed")).isNull();
+        assertThat(cache.get("next")).isNull();
+        cache.put("next", List.of("next"));
+        assertThat(cache.get("next").get()).isEqualTo(List.of("next"));
+
+        cache.put("failed", List.of("late")); //miss 시점을 모르는 put은 넣지 않는다.
+        assertThat(cache.get("failed")).isNull();
+        cache.clear();
+    }
+
+    @Test
+    public void bypassCacheInWriteTransaction() {
+        List<String> result = transactionTemplate.execute(status -> {
+            memberRepository.findUsernameList(); //읽기 전용 트랜잭션이 아니므로 캐시하지 않는다.
+            members.add(memberRepository.save(new Member("cacheC", 10)));
+            return memberRepository.findUsernameList();
+        });
+
+        assertThat(result).contains("cacheC"); //커밋 전이라도 내 변경이 보인다.
+    }
+}
@@ -0,0 +1,139 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.changelog.ChangeType;
+import study.datajpa.changelog.EntityChangeLog;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+public class StatelessBulkProcessorTest {
+
+    //StatelessSession은 자기 트랜잭션으로 커밋하므로 @Transactional 롤백이 통하지 않는다. -> 직접 정리
+
+    @Autowired StatelessBulkProcessor bulkProcessor;
+    @Autowired MemberRepository memberRepository;
+    @Autowired TeamRepository teamRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired EntityChangeLog changeLog;
+
+    List<Long> memberIds = new ArrayList<>();
+    List<Long> teamIds = new ArrayList<>();
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.deleteAllByIdInBatch(memberIds);
+            teamRepository.deleteAllByIdInBatch(teamIds);
+        });
+    }
+
+    @Test
+    public void insertAll() {
+        Team team = new Team("bulkTeam");
+        bulkProcessor.insertAll(List.of(team).iterator(), 10);
+        teamIds.add(team.getId());
+
+        List<Member> members = IntStream.range(0, 25)
+                .mapToObj(i -> new Member("bulkInsert" + i, i, team))
+                .collect(Collectors.toList());
+
+        long inserted = bulkProcessor.insertAll(members.iterator(), 10);
+        members.forEach(member -> memberIds.add(member.getId()));
+
+        assertThat(inserted).isEqualTo(25);
+        assertThat(memberRepository.findAllById(memberIds))
+                .hasSize(25)
+                .allMatch(member -> member.getTeam().getId().equals(team.getId()))
+                .allMatch(member -> member.getCreatedDate() != null && member.getLastModifiedDate() != null); //Auditing을 직접 채운다.
+    }
+
+    @Test
+    public void transformMembersInChunks() {
+        List<Member> members = saveMembers("bulkTransform", 25);
+        long fromId = members.get(0).getId();
+        long toId = members.get(members.size() - 1).getId() + 1;
+
+        //홀수 나이만 변경 -> 변경된 row만 update
+        long updated = bulkProcessor.transformMembers(fromId, toId, 10, member -> {
+            if (!member.getUsername().startsWith("bulkTransform") || member.getAge() % 2 == 0) {
+                return false;
+            }
+            member.setAge(member.getAge() + 100);
+            return true;
+        });
+
+        assertThat(updated).isEqualTo(12);
+        assertThat(memberRepository.findAllById(memberIds))
+                .allMatch(member -> member.getAge() % 2 == 0 ? member.getAge() < 100 : member.getAge() > 100);
+    }
+
+    @Test
+    public void transformMembersInParallel() throws Exception {
+        saveMembers("bulkParallel", 40);
+
+        //다른 테스트가 남긴 회원이 있을 수 있으므로 이 테스트의 회원만 변경
+        long updated = bulkProcessor.transformMembersInParallel(4, 7, member -> {
+            if (!member.getUsername().startsWith("bulkParallel")) {
+                return false;
+            }
+            member.setUsername(member.getUsername().toUpperCase());
+            return true;
+        });
+
+        assertThat(updated).isEqualTo(40);
+        assertThat(memberRepository.findAllById(memberIds))
+                .allMatch(member -> member.getUsername().startsWith("BULKPARALLEL"));
+    }
+
+    @Test
+    public void failedChunkRecordsCommittedChunks() {
+        List<Member> members = saveMembers("bulkFail", 25);
+        long fromId = members.get(0).getId();
+        long toId = members.get(members.size() - 1).getId() + 1;
+        long offset = changeLog.getNextOffset();
+
+        //두번째 chunk에서 실패 -> 첫번째 chunk는 커밋, 두번째 chunk는 롤백
+        assertThatThrownBy(() -> bulkProcessor.transformMembers(fromId, toId, 10, member -> {
+            if (member.getId() >= members.get(15).getId()) {
+                throw new IllegalStateException("transform failed");
+            }
+            member.setAge(member.getAge() + 100);
+            return true;
+        })).hasCauseInstanceOf(IllegalStateException.class); //@Repository 예외 변환
+
+        assertThat(memberRepository.findAllById(memberIds))
+                .allMatch(member -> member.getId() < members.get(10).getId() ? member.getAge() >= 100 : member.getAge() < 100);
+        assertThat(changeLog.read(offset, 100))
+                .anyMatch(change -> change.getEntityName().equals("Member") && change.getType() == ChangeType.BULK);
+    }
+
+    @Test
+    public void rejectNonPositiveSizes() {
+        assertThatThrownBy(() -> bulkProcessor.insertAll(List.of(new Team("bulkZero")).iterator(), 0))
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> bulkProcessor.transformMembers(0, Long.MAX_VALUE, 0, member -> false))
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> bulkProcessor.transformMembersInParallel(0, 10, member -> false))
+                .isInstanceOf(IllegalArgumentException.class); //throws Exception 으로 선언된 메서드는 예외 변환을 하지 않는다.
+    }
+
+    private List<Member> saveMembers(String prefix, int count) {
+        List<Member> members = transactionTemplate.execute(status -> IntStream.range(0, count)
+                .mapToObj(i -> memberRepository.save(new Member(prefix + i, i)))
+                .collect(Collectors.toList()));
+        members.forEach(member -> memberIds.add(member.getId()));
+        return members;
+    }
+}
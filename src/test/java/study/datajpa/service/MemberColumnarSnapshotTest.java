@@ -0,0 +1,91 @@
+package study.datajpa.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "member.snapshot.enabled=true",
+        "member.snapshot.refresh-interval-ms=600000" //테스트에서는 refresh()를 직접 호출한다.
+})
+public class MemberColumnarSnapshotTest {
+
+    //스냅샷은 커밋된 변경만 반영하므로 TransactionTemplate으로 커밋하고 직접 정리한다.
+    //다른 테스트가 남긴 회원과 겹치지 않도록 나이를 1000 이상으로 쓴다.
+
+    @Autowired MemberColumnarSnapshot snapshot;
+    @Autowired MemberRepository memberRepository;
+    @Autowired TeamRepository teamRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    List<Long> memberIds = new ArrayList<>();
+    Team team;
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            memberIds.stream().filter(memberRepository::existsById).forEach(memberRepository::deleteById); //엔티티 삭제 -> 변경 로그 -> 스냅샷에도 반영
+            teamRepository.deleteById(team.getId());
+        });
+    }
+
+    @Test
+    public void followCommittedChanges() {
+        //given
+        team = transactionTemplate.execute(status -> teamRepository.save(new Team("snapshotTeam")));
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 5; i++) {
+                memberIds.add(memberRepository.save(new Member("snapshot", 1000 + i * 10, team)).getId());
+            }
+        });
+
+        //when
+        snapshot.refresh();
+
+        //then
+        assertThat(snapshot.countByAgeGoe(1020)).isEqualTo(3);
+        assertThat(snapshot.countByAgeBetween(1000, 1015)).isEqualTo(2);
+        assertThat(snapshot.countByTeam()).containsEntry(team.getId(), 5L);
+        assertThat(snapshot.countByUsername("snapshot")).isEqualTo(5);
+        assertThat(snapshot.ageHistogram(100)).containsEntry(1000, 5L);
+
+        //when - 수정, 삭제
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.findById(memberIds.get(0)).get().setAge(1100);
+            memberRepository.deleteById(memberIds.get(4));
+        });
+        snapshot.refresh();
+
+        //then
+        assertThat(snapshot.countByAgeGoe(1020)).isEqualTo(3); //1020, 1030, 1100
+        assertThat(snapshot.countByTeam()).containsEntry(team.getId(), 4L);
+        assertThat(snapshot.countByUsername("snapshot")).isEqualTo(4);
+        assertThat(snapshot.ageHistogram(100)).containsEntry(1000, 3L).containsEntry(1100, 1L);
+    }
+
+    @Test
+    public void rebuildAfterBulkUpdate() {
+        team = transactionTemplate.execute(status -> teamRepository.save(new Team("snapshotTeam")));
+        transactionTemplate.executeWithoutResult(status ->
+                memberIds.add(memberRepository.save(new Member("snapshotBulk", 2000, team)).getId()));
+        snapshot.refresh();
+        assertThat(snapshot.countByAgeGoe(2001)).isZero();
+
+        //벌크 연산은 어떤 회원이 바뀌었는지 모르므로 다시 만든다.
+        transactionTemplate.executeWithoutResult(status -> memberRepository.bulkAgePlus(2000));
+        snapshot.refresh();
+
+        assertThat(snapshot.countByAgeGoe(2001)).isEqualTo(1);
+    }
+}
@@ -0,0 +1,98 @@
+package study.datajpa.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+public class MemberScrollServiceTest {
+
+    //미리 조회는 다른 스레드에서 일어나므로 데이터를 커밋해둔다.
+
+    @Autowired MemberScrollService memberScrollService;
+    @Autowired MemberRepository memberRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    List<Member> members = new ArrayList<>();
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                members.forEach(member -> memberRepository.deleteById(member.getId())));
+    }
+
+    @Test
+    public void scrollWithPrefetch() {
+        //given
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 5; i++) {
+                members.add(memberRepository.save(new Member("scroll" + i, 77)));
+            }
+        });
+        PageRequest first = PageRequest.of(0, 2, Sort.by("username"));
+
+        String cursor = memberScrollService.newCursor();
+
+        //when
+        Slice<MemberDto> page0 = memberScrollService.scrollByAge(cursor, 77, first);
+        assertThat(memberScrollService.prefetchedCount()).isEqualTo(1); //다음 페이지를 미리 조회 중
+
+        Slice<MemberDto> page1 = memberScrollService.scrollByAge(cursor, 77, page0.nextPageable());
+        Slice<MemberDto> page2 = memberScrollService.scrollByAge(cursor, 77, page1.nextPageable());
+
+        //then
+        assertThat(page0.getContent()).extracting("username").containsExactly("scroll0", "scroll1");
+        assertThat(page1.getContent()).extracting("username").containsExactly("scroll2", "scroll3");
+        assertThat(page2.getContent()).extracting("username").containsExactly("scroll4");
+        assertThat(page2.hasNext()).isFalse();
+        assertThat(memberScrollService.prefetchedCount()).isEqualTo(0); //마지막 페이지 이후로는 미리 조회하지 않는다.
+    }
+
+    @Test
+    public void invalidateOnlyAffectedPrefetch() {
+        //given
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 3; i++) {
+                members.add(memberRepository.save(new Member("scrollA" + i, 78)));
+                members.add(memberRepository.save(new Member("scrollB" + i, 79)));
+            }
+        });
+        PageRequest first = PageRequest.of(0, 2, Sort.by("username"));
+        String cursorA = memberScrollService.newCursor();
+        String cursorB = memberScrollService.newCursor();
+        memberScrollService.scrollByAge(cursorA, 78, first).getContent();
+        memberScrollService.scrollByAge(cursorB, 79, first).getContent();
+        awaitPrefetch(2);
+
+        //when - 나이 78 회원만 변경
+        transactionTemplate.executeWithoutResult(status ->
+                memberRepository.findById(members.get(0).getId()).get().setUsername("scrollA0-changed"));
+
+        //then - 나이 79의 미리 조회 결과는 남는다.
+        assertThat(memberScrollService.prefetchedCount()).isEqualTo(1);
+        assertThat(memberScrollService.scrollByAge(cursorB, 79, first.next()).getContent())
+                .extracting("username").containsExactly("scrollB2");
+    }
+
+    private void awaitPrefetch(long count) {
+        //미리 조회는 백그라운드에서 끝난다. 끝나기 전의 결과는 변경이 오면 버린다.
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!memberScrollService.prefetchCompleted(count) && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(memberScrollService.prefetchCompleted(count)).isTrue();
+    }
+}
@@ -0,0 +1,64 @@
+package study.datajpa.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.TeamStatsDto;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+public class TeamStatsServiceTest {
+
+    //구간별 조회는 다른 스레드에서 일어나므로 데이터를 커밋해두고 직접 정리한다.
+
+    @Autowired TeamStatsService teamStatsService;
+    @Autowired MemberRepository memberRepository;
+    @Autowired TeamRepository teamRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    List<Long> memberIds = new ArrayList<>();
+    List<Long> teamIds = new ArrayList<>();
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.deleteAllByIdInBatch(memberIds);
+            teamRepository.deleteAllByIdInBatch(teamIds);
+        });
+    }
+
+    @Test
+    public void parallelStatsMatchSingleQuery() {
+        //given - 회원 수가 다른 팀 7개 (회원이 없는 팀 포함)
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 7; i++) {
+                Team team = teamRepository.save(new Team("statsTeam" + i));
+                teamIds.add(team.getId());
+                for (int j = 0; j < i; j++) {
+                    memberIds.add(memberRepository.save(new Member("stats" + i + "-" + j, 10 + j, team)).getId());
+                }
+            }
+        });
+
+        //when
+        List<TeamStatsDto> single = new ArrayList<>(teamRepository.findTeamStats());
+        single.sort(Comparator.comparing(TeamStatsDto::getTeamId));
+
+        //then - 구간 수가 팀 수보다 적거나 많아도 같은 결과
+        assertThat(teamStatsService.findTeamStatsInParallel(3)).isEqualTo(single);
+        assertThat(teamStatsService.findTeamStatsInParallel(1)).isEqualTo(single);
+        assertThat(teamStatsService.findTeamStatsInParallel(50)).isEqualTo(single);
+        assertThat(teamStatsService.findTeamStatsInParallel(0)).isEqualTo(single); //1개로 조회
+    }
+}